@@ -2,14 +2,21 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.BulkImportResultDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -21,10 +28,33 @@ import java.util.List;
 public class FilmController {
     private static final Logger log = LoggerFactory.getLogger(FilmService.class);
     FilmService filmService;
+    NdjsonWriter ndjsonWriter;
+    FilmExportWriter filmExportWriter;
 
     @GetMapping
-    public Collection<FilmDto> getAll() {
-        return filmService.getAll();
+    public Collection<FilmDto> getAll(@RequestParam(name = "after", required = false) Integer after,
+                                      @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return filmService.getAll();
+        }
+        return filmService.getPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.response(filmService::streamAll);
+    }
+
+    /**
+     * Выгрузка каталога для аналитики: фильмы с жанрами, режиссерами, рейтингом и количеством лайков.
+     *
+     * @param format {@code ndjson} или {@code csv}
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return filmExportWriter.response(format, acceptEncoding, filmService::exportAll);
     }
 
     @GetMapping("/{id}")
@@ -38,6 +68,14 @@ public class FilmController {
         return filmService.create(requestFilm);
     }
 
+    /**
+     * Импорт фильмов из потока NDJSON. Ошибочные записи не прерывают импорт и возвращаются в отчете.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkImportResultDto bulkImport(InputStream body) {
+        return filmService.importFilms(body);
+    }
+
     @PutMapping
     public FilmDto updateFilm(@Valid @RequestBody FilmDto requestFilm) {
         return filmService.update(requestFilm);
@@ -109,7 +147,14 @@ public class FilmController {
 
     @GetMapping("/search")
     public List<FilmDto> searchFilms(@RequestParam String query,
-                                     @RequestParam List<String> by) {
-        return filmService.searchFilms(query, by);
+                                     @RequestParam List<String> by,
+                                     @RequestParam(name = "count", required = false) Integer count) {
+        return filmService.searchFilms(query, by, count);
+    }
+
+    @GetMapping("/search/suggest")
+    public List<SuggestionDto> suggest(@RequestParam String query,
+                                       @RequestParam(name = "limit", required = false, defaultValue = "10") int limit) {
+        return filmService.suggest(query, limit);
     }
 }
\ No newline at end of file
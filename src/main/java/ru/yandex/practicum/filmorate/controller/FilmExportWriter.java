@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmExportDto;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка каталога фильмов в NDJSON или CSV.
+ * Фильмы записываются в ответ по мере чтения из базы, при поддержке клиентом ответ сжимается gzip на лету.
+ */
+@Component
+@AllArgsConstructor
+public class FilmExportWriter {
+    private static final String CSV_HEADER = "id,name,description,release_date,duration,mpa_id,mpa_name,genres,directors,likes";
+    private static final String LIST_SEPARATOR = "|";
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param format         {@code ndjson} или {@code csv}
+     * @param acceptEncoding заголовок Accept-Encoding запроса
+     * @param source         источник, который передает фильмы в полученный им Consumer
+     * @throws ValidationException если формат не поддерживается
+     */
+    public ResponseEntity<StreamingResponseBody> response(String format, String acceptEncoding,
+                                                          Consumer<Consumer<FilmExportDto>> source) {
+        boolean csv = switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> false;
+            case "csv" -> true;
+            default -> throw new ValidationException("Формат выгрузки должен быть ndjson или csv");
+        };
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            source.accept(film -> writeLine(writer, csv ? toCsv(film) : toJson(film)));
+            writer.flush();
+            if (target instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"films." + (csv ? "csv" : "ndjson") + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(body);
+    }
+
+    private String toJson(FilmExportDto film) {
+        try {
+            return objectMapper.writeValueAsString(film);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(FilmExportDto film) {
+        return String.join(",",
+                String.valueOf(film.getId()),
+                csvField(film.getName()),
+                csvField(film.getDescription()),
+                film.getReleaseDate() != null ? film.getReleaseDate().toString() : "",
+                film.getDuration() != null ? film.getDuration().toString() : "",
+                film.getMpa() != null ? String.valueOf(film.getMpa().getId()) : "",
+                csvField(film.getMpa() != null ? film.getMpa().getName() : null),
+                csvField(film.getGenres().stream().map(GenreDto::getName).collect(Collectors.joining(LIST_SEPARATOR))),
+                csvField(film.getDirectors().stream().map(DirectorDto::getName).collect(Collectors.joining(LIST_SEPARATOR))),
+                String.valueOf(film.getLikes()));
+    }
+
+    // Экранирование по RFC 4180: поле с разделителем, кавычкой или переводом строки берется в кавычки
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
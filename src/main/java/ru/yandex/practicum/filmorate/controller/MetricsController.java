@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.service.BulkImporter;
+import ru.yandex.practicum.filmorate.service.FeedEventPipeline;
+import ru.yandex.practicum.filmorate.service.FeedRetentionJob;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.RecommendationCache;
+import ru.yandex.practicum.filmorate.service.ReviewUsefulCounter;
+import ru.yandex.practicum.filmorate.service.UserTimelineService;
+
+/**
+ * Служебные показатели внутренних кэшей и индексов.
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final RecommendationCache recommendationCache;
+    private final FilmSuggestTrie filmSuggestTrie;
+    private final ReferenceDataCache referenceDataCache;
+    private final BulkImporter bulkImporter;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final FeedEventPipeline feedEventPipeline;
+    private final FeedRetentionJob feedRetentionJob;
+    private final UserTimelineService userTimelineService;
+    private final FriendSuggestionService friendSuggestionService;
+    private final ReviewUsefulCounter reviewUsefulCounter;
+
+    @GetMapping("/recommendations")
+    public RecommendationCache.Stats getRecommendationCacheStats() {
+        return recommendationCache.stats();
+    }
+
+    @GetMapping("/suggest")
+    public FilmSuggestTrie.Stats getSuggestTrieStats() {
+        return filmSuggestTrie.stats();
+    }
+
+    @GetMapping("/reference-data")
+    public ReferenceDataCache.Stats getReferenceDataStats() {
+        return referenceDataCache.stats();
+    }
+
+    @GetMapping("/bulk-import")
+    public BulkImporter.Stats getBulkImportStats() {
+        return bulkImporter.stats();
+    }
+
+    @GetMapping("/likes-buffer")
+    public LikeWriteBuffer.Stats getLikeBufferStats() {
+        return likeWriteBuffer.stats();
+    }
+
+    @GetMapping("/feed")
+    public FeedEventPipeline.Stats getFeedPipelineStats() {
+        return feedEventPipeline.stats();
+    }
+
+    @GetMapping("/feed-retention")
+    public FeedRetentionJob.Stats getFeedRetentionStats() {
+        return feedRetentionJob.stats();
+    }
+
+    @GetMapping("/timelines")
+    public UserTimelineService.Stats getTimelineStats() {
+        return userTimelineService.stats();
+    }
+
+    @GetMapping("/friend-suggestions")
+    public FriendSuggestionService.Stats getFriendSuggestionStats() {
+        return friendSuggestionService.stats();
+    }
+
+    @GetMapping("/review-useful")
+    public ReviewUsefulCounter.Stats getReviewUsefulCounterStats() {
+        return reviewUsefulCounter.stats();
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Ответ в формате NDJSON: по одному JSON-объекту на строку.
+ * Объекты сериализуются и записываются в ответ по мере получения от источника.
+ */
+@Component
+@AllArgsConstructor
+public class NdjsonWriter {
+    private static final int NEW_LINE = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param source источник, который передает объекты в полученный им Consumer
+     */
+    public <T> ResponseEntity<StreamingResponseBody> response(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = out -> source.accept(item -> writeLine(out, item));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, Object item) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(item));
+            out.write(NEW_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
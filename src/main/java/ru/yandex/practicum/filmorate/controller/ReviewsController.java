@@ -64,24 +64,32 @@ public class ReviewsController {
     /**
      * Получение списка отзывов
      *
-     * @param filmId id фильма в базе данных (Не обязательный параметр)
-     * @param count  количество выводимых значений (По умолчанию 10)
+     * @param filmId      id фильма в базе данных (Не обязательный параметр)
+     * @param count       количество выводимых значений (По умолчанию 10)
+     * @param afterUseful полезность последнего отзыва предыдущей страницы (Не обязательный параметр)
+     * @param afterId     id последнего отзыва предыдущей страницы (Задается вместе с afterUseful)
      */
     @GetMapping
     public List<ReviewDto> getReviews(@RequestParam(required = false) Integer filmId,
-                                      @RequestParam(required = false, defaultValue = "10") Integer count) {
-        return reviewService.getReviews(filmId, count);
+                                      @RequestParam(required = false, defaultValue = "10") Integer count,
+                                      @RequestParam(required = false) Integer afterUseful,
+                                      @RequestParam(required = false) Integer afterId) {
+        return reviewService.getReviews(filmId, count, afterUseful, afterId);
     }
 
     /**
      * Получение списка отзывов (Обрабатывает явный запрос /null)
      *
-     * @param count количество выводимых значений (По умолчанию 10)
+     * @param count       количество выводимых значений (По умолчанию 10)
+     * @param afterUseful полезность последнего отзыва предыдущей страницы (Не обязательный параметр)
+     * @param afterId     id последнего отзыва предыдущей страницы (Задается вместе с afterUseful)
      */
     @GetMapping("/null")
     public List<ReviewDto> getReviewsWithNullFilmId(
-            @RequestParam(required = false, defaultValue = "10") Integer count) {
-        return reviewService.getReviews(null, count);  // filmId = null
+            @RequestParam(required = false, defaultValue = "10") Integer count,
+            @RequestParam(required = false) Integer afterUseful,
+            @RequestParam(required = false) Integer afterId) {
+        return reviewService.getReviews(null, count, afterUseful, afterId);  // filmId = null
     }
 
     /**
@@ -3,15 +3,22 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.BulkImportResultDto;
 import ru.yandex.practicum.filmorate.dto.EventDto;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.service.UserFeedService;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService;
 import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.InputStream;
 import java.util.List;
 
 
@@ -24,10 +31,21 @@ public class UserController {
     private final UserFeedService feedService;
     private final UserService userService;
     private final RecommendationService recommendationService;
+    private final FriendSuggestionService friendSuggestionService;
+    private final NdjsonWriter ndjsonWriter;
 
     @GetMapping
-    public List<UserDto> getAll() {
-        return userService.getAll();
+    public List<UserDto> getAll(@RequestParam(name = "after", required = false) Integer after,
+                                @RequestParam(name = "limit", required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userService.getAll();
+        }
+        return userService.getPage(after, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.response(userService::streamAll);
     }
 
     @PostMapping
@@ -36,6 +54,14 @@ public class UserController {
         return userService.addUser(requestUser);
     }
 
+    /**
+     * Импорт пользователей из потока NDJSON. Ошибочные записи не прерывают импорт и возвращаются в отчете.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkImportResultDto bulkImport(InputStream body) {
+        return userService.importUsers(body);
+    }
+
     @PutMapping
     public UserDto updateUser(@Valid @RequestBody UserDto requestUser) {
         return userService.updateUser(requestUser);
@@ -75,9 +101,43 @@ public class UserController {
         return userService.getUserFriends(userId);
     }
 
+    /**
+     * Лента пользователя. Без параметров возвращается целиком, с параметрами - постранично
+     * в пределах [since, until), см. {@link UserFeedService#getFeedPage}.
+     */
     @GetMapping("/{userId}/feed")
-    public List<EventDto> getUserFeed(@PathVariable Integer userId) {
-        return feedService.getFeedByUserId(userId);
+    public List<EventDto> getUserFeed(@PathVariable Integer userId,
+                                      @RequestParam(name = "since", required = false) Long since,
+                                      @RequestParam(name = "until", required = false) Long until,
+                                      @RequestParam(name = "after", required = false) Long after,
+                                      @RequestParam(name = "limit", required = false) Integer limit) {
+        if (since == null && until == null && after == null && limit == null) {
+            return feedService.getFeedByUserId(userId);
+        }
+        return feedService.getFeedPage(userId, since, until, after, limit);
+    }
+
+    /**
+     * Лента событий друзей пользователя, от новых к старым.
+     * Для следующей страницы в {@code before} передается id последнего полученного события.
+     */
+    @GetMapping("/{userId}/timeline")
+    public List<EventDto> getUserTimeline(@PathVariable Integer userId,
+                                          @RequestParam(name = "before", required = false) Long before,
+                                          @RequestParam(name = "limit", required = false) Integer limit) {
+        return feedService.getTimeline(userId, before, limit);
+    }
+
+    /**
+     * Возможные друзья пользователя: друзья его друзей по убыванию количества общих друзей и общих лайков.
+     *
+     * @param userId идентификатор пользователя
+     * @param limit  количество кандидатов, по умолчанию 10
+     */
+    @GetMapping("/{userId}/friends/suggestions")
+    public List<FriendSuggestionDto> getFriendSuggestions(@PathVariable Integer userId,
+                                                          @RequestParam(name = "limit", required = false) Integer limit) {
+        return friendSuggestionService.getSuggestions(userId, limit);
     }
 
     /**
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResultDto {
+    private long received;              // Непустые строки во входном потоке
+    private long imported;              // Сохраненные записи
+    private long failed;                // Отклоненные записи
+    private List<RecordError> errors;   // Ошибки по записям, не больше filmorate.bulk.max-errors
+    private boolean errorsTruncated;    // Часть ошибок не попала в список
+    private long elapsedMs;
+    private double rowsPerSecond;       // Сохраненные записи в секунду
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecordError {
+        private long line;              // Номер строки во входном потоке, начиная с 1
+        private String message;
+    }
+}
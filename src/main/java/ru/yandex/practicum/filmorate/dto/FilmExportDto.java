@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilmExportDto {
+    private int id;
+    private String name;
+    private String description;
+    private LocalDate releaseDate;
+    private Long duration;
+    private MpaDto mpa;
+    @Builder.Default
+    private List<GenreDto> genres = new ArrayList<>();        // По возрастанию id
+    @Builder.Default
+    private List<DirectorDto> directors = new ArrayList<>();  // По возрастанию id
+    private int likes;                                        // Количество лайков
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendSuggestionDto {
+    private UserDto user;
+    private int mutualFriends;    // Друзья пользователя, у которых кандидат в друзьях
+    private int commonLikes;      // Фильмы, лайкнутые и пользователем, и кандидатом
+    private double score;
+}
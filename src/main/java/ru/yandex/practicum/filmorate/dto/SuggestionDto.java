@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    private String text;
+    private String type;          // Тип подсказки: FILM, DIRECTOR
+    private Integer id;           // ID фильма или режиссера
+    private Integer likes;        // Вес подсказки: лайки фильма или всех фильмов режиссера
+}
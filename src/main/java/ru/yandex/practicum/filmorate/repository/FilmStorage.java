@@ -5,6 +5,7 @@ import ru.yandex.practicum.filmorate.model.Film;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
@@ -14,14 +15,18 @@ public interface FilmStorage {
 
     List<Film> getAll();
 
+    List<Film> getPage(Integer afterId, int limit);
+
+    void streamAll(Consumer<Film> consumer);
+
     Optional<Film> getById(Integer id);
 
+    List<Film> getByIds(List<Integer> ids);
+
     Optional<Boolean> addLike(Integer filmId, Integer userId);
 
     Optional<Boolean> removeLike(Integer filmId, Integer userId);
 
-    List<Film> getPopularFilm(Integer count);
-
     void delete(Integer id);
 
     boolean existsById(Integer id);
@@ -30,7 +35,5 @@ public interface FilmStorage {
 
     Collection<Film> getFilmsDirector(Long filmId, String sortBy);
 
-    List<Film> getPopularFilmsByGenreAndYear(int count, Integer genreId, Integer year);
-
-    List<Film> search(String query, List<String> by);
+    List<Film> search(String query, boolean byTitle, boolean byDirector, int count);
 }
\ No newline at end of file
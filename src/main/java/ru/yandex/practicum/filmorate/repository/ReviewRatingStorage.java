@@ -4,11 +4,9 @@ import java.util.Optional;
 
 public interface ReviewRatingStorage {
 
-    void addRating(Integer reviewId, Integer userId, boolean isLike);
+    int vote(Integer reviewId, Integer userId, Boolean isLike);
 
-    void updateRating(Integer reviewId, Integer userId, boolean isLike);
-
-    void deleteRating(Integer reviewId, Integer userId);
+    int replaceRating(Integer reviewId, Integer userId, Boolean isLike);
 
     Optional<Boolean> getRating(Integer reviewId, Integer userId);
 
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.repository;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ReviewStorage {
@@ -15,11 +16,9 @@ public interface ReviewStorage {
 
     Optional<Review> getReviewById(Integer id);
 
-    List<Review> getReviewsById(Integer filmId, Integer count);
-
     Integer getUserIdByReviewId(Integer reviewId);
 
-    List<Review> getAll(Integer count);
+    List<Review> getByIds(List<Integer> ids);
 
     void incrementUseful(Integer reviewId);
 
@@ -31,4 +30,6 @@ public interface ReviewStorage {
 
     void updateUseful(Integer reviewId, int delta);
 
+    void updateUseful(Map<Integer, Integer> deltas);
+
 }
\ No newline at end of file
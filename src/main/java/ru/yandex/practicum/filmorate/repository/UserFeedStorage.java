@@ -8,5 +8,11 @@ public interface UserFeedStorage {
 
     void addEvent(UserFeedEvent event);
 
+    void addEvents(List<UserFeedEvent> events);
+
     List<UserFeedEvent> getFeedByUserId(int userId);
+
+    List<UserFeedEvent> getFeedPage(int userId, long since, long until, long afterId, int limit);
+
+    int archiveBefore(long before, int batchSize);
 }
\ No newline at end of file
@@ -4,11 +4,16 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     List<User> getAll();
 
+    List<User> getPage(Integer afterId, int limit);
+
+    void streamAll(Consumer<User> consumer);
+
     Optional<User> getUserById(Integer id);
 
     User addUser(User user);
@@ -23,6 +28,8 @@ public interface UserStorage {
 
     Optional<List<User>> getUserFriends(Integer userId);
 
+    List<User> getUsersByIds(int[] ids);
+
     void delete(Integer id);
 
     boolean existsById(Integer id);
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.repository;
+
+import ru.yandex.practicum.filmorate.model.UserFeedEvent;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UserTimelineStorage {
+
+    void addEntries(List<Entry> entries);
+
+    void trimToCapacity(Collection<Integer> userIds, int capacity);
+
+    List<UserFeedEvent> getTimeline(int userId, int limit);
+
+    List<UserFeedEvent> getRecentEvents(int authorId, long beforeEventId, int limit);
+
+    /**
+     * Событие {@code eventId} в ленте друзей пользователя {@code userId}.
+     */
+    record Entry(int userId, long eventId) {
+    }
+}
@@ -1,41 +1,94 @@
 package ru.yandex.practicum.filmorate.repository.impl;
 
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
 
-import java.util.Optional;
+import java.util.*;
 
-@AllArgsConstructor
 @Slf4j
 public class BaseDbStorage {
     protected final JdbcTemplate jdbcTemplate;
+    // Если задан, проверки жанров, рейтингов и режиссеров выполняются без обращения к базе
+    protected final ReferenceDataCache referenceDataCache;
 
     private static final String CHECK_USER_EXIST_BY_ID_QUERY = "SELECT COUNT(*) FROM users WHERE id = ?; ";
     private static final String CHECK_FILM_EXIST_BY_ID_QUERY = "SELECT COUNT(*) FROM films WHERE id = ?; ";
     private static final String CHECK_GENRE_EXIST_BY_ID_QUERY = "SELECT COUNT(*) FROM genres WHERE genre_id = ?; ";
     private static final String CHECK_RATING_EXIST_BY_ID_QUERY = "SELECT COUNT(*) FROM mpa_rating WHERE id = ?; ";
     private static final String CHECK_REVIEW_EXIST_BY_ID_QUERY = "SELECT COUNT(*) FROM reviews WHERE review_id = ?; ";
+    private static final String FIND_EXISTING_IDS_QUERY = "SELECT %2$s FROM %1$s WHERE %2$s IN (%3$s);";
+    private static final int EXISTENCE_BATCH_SIZE = 1000;
     protected static final String CHECK_EXISTS_DIRECTOR_BY_ID_QUERY = """
             SELECT COUNT(*)
             FROM directors
             WHERE id = ?;
             """;
 
-    protected void checkEntityExist(Integer id, TypeEntity typeEntity) {
-        String sql = getQuery(typeEntity);
+    public BaseDbStorage(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, null);
+    }
 
-        int count = Optional.ofNullable(jdbcTemplate.queryForObject(sql, Integer.class, id)).orElse(0);
+    public BaseDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceDataCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataCache = referenceDataCache;
+    }
 
-        if (count == 0) {
+    protected void checkEntityExist(Integer id, TypeEntity typeEntity) {
+        if (!entityExists(id, typeEntity)) {
             String errorMessage = String.format("Объект %s с id %s не найден ", typeEntity, id);
             log.warn(errorMessage);
             throw new NotFoundException(errorMessage);
         }
     }
 
+    /**
+     * Проверка существования набора сущностей одного типа.
+     * Справочники проверяются по кэшу, остальные типы - одним запросом {@code IN (...)}
+     * на каждые {@value #EXISTENCE_BATCH_SIZE} id.
+     *
+     * @param ids        идентификаторы; повторы и порядок не важны
+     * @param typeEntity тип сущности
+     * @throws NotFoundException со списком всех отсутствующих id
+     */
+    protected void checkEntitiesExist(Collection<Integer> ids, TypeEntity typeEntity) {
+        Set<Integer> missing = new LinkedHashSet<>(ids);
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        if (referenceDataCache != null && referenceDataCache.isCached(typeEntity)) {
+            missing.removeIf(id -> referenceDataCache.contains(typeEntity, id));
+        } else {
+            List<Integer> requested = missing.stream().filter(Objects::nonNull).toList();
+            for (int from = 0; from < requested.size(); from += EXISTENCE_BATCH_SIZE) {
+                List<Integer> chunk = requested.subList(from, Math.min(from + EXISTENCE_BATCH_SIZE, requested.size()));
+                String sql = String.format(FIND_EXISTING_IDS_QUERY, getTable(typeEntity), getIdColumn(typeEntity),
+                        placeholders(chunk.size()));
+                jdbcTemplate.queryForList(sql, Integer.class, chunk.toArray()).forEach(missing::remove);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            String errorMessage = String.format("Объекты %s с id %s не найдены", typeEntity, missing);
+            log.warn(errorMessage);
+            throw new NotFoundException(errorMessage);
+        }
+    }
+
+    // Существование сущности: справочники - из кэша, остальное - запросом COUNT(*)
+    private boolean entityExists(Integer id, TypeEntity type) {
+        if (referenceDataCache != null && referenceDataCache.isCached(type)) {
+            return referenceDataCache.contains(type, id);
+        }
+        int count = Optional.ofNullable(jdbcTemplate.queryForObject(getQuery(type), Integer.class, id)).orElse(0);
+        return count > 0;
+    }
+
     private String getQuery(TypeEntity typeEntity) {
         return switch (typeEntity) {
             case GENRE -> CHECK_GENRE_EXIST_BY_ID_QUERY;
@@ -47,12 +100,49 @@ public class BaseDbStorage {
         };
     }
 
-    protected void checkEntityExists(Integer id, TypeEntity type) {
-        String query = getQuery(type);
+    private static String getTable(TypeEntity typeEntity) {
+        return switch (typeEntity) {
+            case GENRE -> "genres";
+            case FILM -> "films";
+            case RATING -> "mpa_rating";
+            case USER -> "users";
+            case REVIEW -> "reviews";
+            case DIRECTOR -> "directors";
+        };
+    }
+
+    private static String getIdColumn(TypeEntity typeEntity) {
+        return switch (typeEntity) {
+            case GENRE -> "genre_id";
+            case REVIEW -> "review_id";
+            default -> "id";
+        };
+    }
 
-        int count = Optional.ofNullable(jdbcTemplate.queryForObject(query, Integer.class, id)).orElse(0);
+    /**
+     * Изменение индексов и реестров в памяти после фиксации текущей транзакции: при откате они остаются
+     * в согласии с базой. Вне транзакции действие выполняется сразу.
+     */
+    protected static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
-        if (count == 0) {
+    // Список параметров для IN (...) ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    protected void checkEntityExists(Integer id, TypeEntity type) {
+        if (!entityExists(id, type)) {
             String errorMessage = String.format("%s with id=%d not found", type, id);
             log.warn(errorMessage);
             throw new NotFoundException(errorMessage);
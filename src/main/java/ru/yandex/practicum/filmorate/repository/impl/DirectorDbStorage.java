@@ -6,18 +6,17 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.dto.DirectorDto;
-import ru.yandex.practicum.filmorate.mapper.toEntity.DirectorMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.repository.DirectorStorage;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
-import ru.yandex.practicum.filmorate.rowMappers.DirectorDtoRowMapper;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
 
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.Collection;
-import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -29,16 +28,6 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
             INSERT INTO directors (name) VALUES (?);
             """;
 
-    public static final String FIND_ALL_DIRECTORS_QUERY = """
-            SELECT * FROM directors;
-            """;
-
-    public static final String FIND_DIRECTOR_BY_ID = """
-            SELECT *
-            FROM directors
-            WHERE id = ?;
-            """;
-
     public static final String UPDATE_DIRECTOR_QUERY = """
             UPDATE directors
             SET name = ?
@@ -51,8 +40,14 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
             """;
 
 
-    public DirectorDbStorage(JdbcTemplate jdbc) {
-        super(jdbc);
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmSuggestTrie filmSuggestTrie;
+
+    public DirectorDbStorage(JdbcTemplate jdbc, ReferenceDataCache referenceDataCache,
+                             FilmSearchIndex filmSearchIndex, FilmSuggestTrie filmSuggestTrie) {
+        super(jdbc, referenceDataCache);
+        this.filmSearchIndex = filmSearchIndex;
+        this.filmSuggestTrie = filmSuggestTrie;
     }
 
     //--- Создать режиссера --------------------------------------------------------------------------------------------
@@ -70,6 +65,9 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
 
         Long directorId = keyHolder.getKeyAs(Long.class);
         director.setId(Math.toIntExact(directorId));
+        referenceDataCache.putDirector(director);
+        filmSearchIndex.putDirector(director.getId(), director.getName());
+        filmSuggestTrie.putDirector(director.getId(), director.getName());
         log.info("Successfully created director with id: {}", directorId);
 
         return director;
@@ -81,24 +79,13 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
         Objects.requireNonNull(id, "Director id cannot be null");
         checkEntityExists(Math.toIntExact(id), TypeEntity.DIRECTOR);
 
-        DirectorDto directorDto = jdbcTemplate.queryForObject(FIND_DIRECTOR_BY_ID, new DirectorDtoRowMapper(), id);
-
-        if (directorDto != null) {
-            return Optional.of(DirectorMapper.toDirector(directorDto));
-        }
-
-        log.warn("Director with id {} not found", id);
-        return Optional.empty();
+        return referenceDataCache.getDirector(Math.toIntExact(id));
     }
 
     //--- Получить список всех режиссеров ------------------------------------------------------------------------------
     @Override
     public Collection<Director> getAllDirectors() {
-        List<DirectorDto> allDirector = jdbcTemplate.query(FIND_ALL_DIRECTORS_QUERY, new DirectorDtoRowMapper());
-
-        return allDirector.stream()
-                .map(DirectorMapper::toDirector)
-                .toList();
+        return referenceDataCache.getAllDirectors();
     }
 
     //--- Обновить режиссера -------------------------------------------------------------------------------------------
@@ -113,6 +100,9 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
         );
 
         if (rowsAffected > 0) {
+            referenceDataCache.putDirector(director);
+            filmSearchIndex.putDirector(director.getId(), director.getName());
+            filmSuggestTrie.putDirector(director.getId(), director.getName());
             log.info("Successfully updated director with id: {}", director.getId());
             return Optional.of(director);
         }
@@ -127,6 +117,9 @@ public class DirectorDbStorage extends BaseDbStorage implements DirectorStorage
         checkEntityExists(Math.toIntExact(id), TypeEntity.DIRECTOR);
 
         int rowsAffected = jdbcTemplate.update(DELETE_DIRECTOR_QUERY, id);
+        referenceDataCache.removeDirector(Math.toIntExact(id));
+        filmSearchIndex.removeDirector(Math.toIntExact(id));
+        filmSuggestTrie.removeDirector(Math.toIntExact(id));
         return Optional.of(rowsAffected > 0);
     }
 
@@ -2,29 +2,43 @@ package ru.yandex.practicum.filmorate.repository.impl;
 
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dto.DirectorDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmExportDto;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
 import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.toEntity.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.repository.FilmStorage;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
-import ru.yandex.practicum.filmorate.rowMappers.DirectorDtoRowMapper;
+import ru.yandex.practicum.filmorate.repository.memory.EntityIdRegistry;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.rowMappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.rowMappers.GenreDtoRowMapper;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
@@ -37,8 +51,12 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
             UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_rating_id = ?
             WHERE id = ?;
             """;
-    private static final String ADD_LIKE_TO_FILM_QUERY = """
-            INSERT INTO film_likes (USER_ID, FILM_ID) VALUES (?, ?);
+    // Вставка только отсутствующего лайка: 1 строка, если лайк новый, 0 - если уже был
+    private static final String MERGE_LIKE_QUERY = """
+            MERGE INTO film_likes fl
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS l(user_id, film_id)
+            ON fl.user_id = l.user_id AND fl.film_id = l.film_id
+            WHEN NOT MATCHED THEN INSERT (user_id, film_id) VALUES (l.user_id, l.film_id);
             """;
     private static final String INSERT_FILM_DIRECTOR_QUERY = """
             INSERT INTO film_directors (film_id, director_id) VALUES (?, ?);
@@ -46,23 +64,10 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
     private static final String DELETE_LIKE_TO_FILM_QUERY = """
             DELETE FROM film_likes WHERE USER_ID = ? AND FILM_ID = ?;
             """;
-    private static final String GET_POPULAR_FILM_QUERY = """
-                SELECT f.*,
-                   mr.id mpa_id,
-                   mr.name mpa_name,
-                   mr.description mpa_description,
-                   fl.likes_count
-            FROM films f
-            JOIN MPA_RATING mr ON f.mpa_rating_id = mr.id
-            LEFT JOIN (
-                SELECT film_id, COUNT(*) AS likes_count
-                FROM film_likes
-                GROUP BY film_id
-            ) fl ON f.id = fl.film_id
-            ORDER BY likes_count DESC,
-                     f.id DESC
-            LIMIT ?;
+    private static final String UPDATE_LIKES_COUNT_QUERY = """
+            UPDATE films SET likes_count = likes_count + ? WHERE id = ?;
             """;
+    // Порядок по лайкам задается рейтингом в памяти: он учитывает и лайки, еще не записанные в likes_count
     private static final String FIND_FILMS_DIRECTORS_FOR_LIKES = """
             SELECT f.id AS id,
                    f.name AS name,
@@ -71,21 +76,14 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
                    f.duration,
                    mr.id AS mpa_id,
                    mr.name AS mpa_name,
-                   mr.description AS mpa_description,
-                   COALESCE(fl.likes_count, 0) AS likes_count
+                   mr.description AS mpa_description
             FROM films f
             JOIN mpa_rating mr ON f.mpa_rating_id = mr.id
-            LEFT JOIN (
-                SELECT film_id, COUNT(*) AS likes_count
-                FROM film_likes
-                GROUP BY film_id
-            ) fl ON f.id = fl.film_id
             WHERE f.id IN (
                 SELECT film_id
                 FROM film_directors
                 WHERE director_id = ?
-            )
-            ORDER BY likes_count DESC;
+            );
             """;
 
     private static final String ADD_FILM_GENRES_QUERY = """
@@ -99,13 +97,48 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
             FROM films f
             LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.id;
             """;
-    private static final String GET_GENRES_ID_FOR_FILM_ID_QUERY = """
-                    SELECT g.genre_id,
-                           g.name
-                    FROM genres g
-                    JOIN film_genres fg ON g.GENRE_ID = fg.GENRE_ID
-                    WHERE fg.FILM_ID = ?
-                    ORDER BY g.genre_id ASC;
+    private static final String GET_FILMS_PAGE_QUERY = """
+            SELECT f.*,
+                   m.id mpa_id,
+                   m.name mpa_name,
+                   m.description mpa_description
+            FROM films f
+            LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.id
+            WHERE f.id > ?
+            ORDER BY f.id
+            LIMIT ?;
+            """;
+    private static final String STREAM_ALL_FILMS_QUERY = """
+            SELECT f.*,
+                   m.id mpa_id,
+                   m.name mpa_name,
+                   m.description mpa_description
+            FROM films f
+            LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.id
+            ORDER BY f.id;
+            """;
+    // Фильм занимает несколько соседних строк: по одной на каждую пару (жанр, режиссер)
+    private static final String EXPORT_FILMS_QUERY = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.likes_count,
+                   m.id mpa_id,
+                   m.name mpa_name,
+                   m.description mpa_description,
+                   g.genre_id,
+                   g.name genre_name,
+                   d.id director_id,
+                   d.name director_name
+            FROM films f
+            LEFT JOIN mpa_rating m ON f.mpa_rating_id = m.id
+            LEFT JOIN film_genres fg ON fg.film_id = f.id
+            LEFT JOIN genres g ON g.genre_id = fg.genre_id
+            LEFT JOIN film_directors fd ON fd.film_id = f.id
+            LEFT JOIN directors d ON d.id = fd.director_id
+            ORDER BY f.id, g.genre_id, d.id;
             """;
     private static final String FIND_FILMS_DIRECTORS_FOR_DATES = """
             SELECT f.id AS id,
@@ -115,15 +148,9 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
                    f.duration,
                    mr.id AS mpa_id,
                    mr.name AS mpa_name,
-                   mr.description AS mpa_description,
-                   COALESCE(fl.likes_count, 0) AS likes_count
+                   mr.description AS mpa_description
             FROM films f
             JOIN mpa_rating mr ON f.mpa_rating_id = mr.id
-            LEFT JOIN (
-                SELECT film_id, COUNT(*) AS likes_count
-                FROM film_likes
-                GROUP BY film_id
-            ) fl ON f.id = fl.film_id
             WHERE f.id IN (
                 SELECT film_id
                 FROM film_directors
@@ -132,11 +159,6 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
             ORDER BY f.release_date ASC;
             """;
 
-    private static final String GET_LIKES_BY_FILM_ID_QUERY = """
-                    SELECT user_id
-                    FROM film_likes
-                    WHERE film_id = ?;
-            """;
     private static final String GET_FILM_BY_ID_QUERY = """
                             SELECT f.*,
                                    m.ID mpa_id,
@@ -146,8 +168,20 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
                             JOIN mpa_rating m ON f.mpa_rating_id = m.id
                             WHERE f.id = ?;
             """;
-    private static final String DELETE_FILM_GENRES_BY_ID = """
-            DELETE FROM film_genres WHERE film_id = ?;
+    private static final String GET_FILMS_BY_IDS_QUERY = """
+            SELECT f.*,
+                   m.id mpa_id,
+                   m.name mpa_name,
+                   m.description mpa_description
+            FROM films f
+            JOIN mpa_rating m ON f.mpa_rating_id = m.id
+            WHERE f.id IN (%s);
+            """;
+    private static final String GET_FILM_GENRE_IDS_QUERY = """
+            SELECT genre_id FROM film_genres WHERE film_id = ?;
+            """;
+    private static final String DELETE_FILM_GENRE_QUERY = """
+            DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?;
             """;
     private static final String GET_COMMON_FILMS = """
             SELECT f.*, m.id AS mpa_id, m.name AS mpa_name, m.description AS mpa_description
@@ -157,64 +191,41 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
             JOIN mpa_rating m ON f.mpa_rating_id = m.id
             WHERE fl1.user_id = ? AND fl2.user_id = ?
             GROUP BY f.id, m.id, m.name, m.description
-            ORDER BY (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id) DESC
+            ORDER BY f.likes_count DESC
             """;
     private static final String GET_LIKED_FILMS_BY_USER_ID_QUERY = """
             SELECT film_id
             FROM film_likes
             WHERE user_id = ?;
             """;
-    private static final String BASE_SEARCH_FILM = """
-            SELECT f.*,
-                   mr.id mpa_id,
-                   mr.name mpa_name,
-                   mr.description mpa_description,
-                   d.ID  AS director_id,
-                   d.NAME AS director_name
-            FROM films f
-            JOIN MPA_RATING mr ON f.MPA_RATING_ID = mr.ID
-            LEFT JOIN (SELECT film_id, COUNT(*) AS likes_count
-                       FROM FILM_LIKES
-                       GROUP BY film_id) fl ON f.id = fl.FILM_ID
-            LEFT JOIN FILM_DIRECTORS fd ON f.id = fd.film_id
-            LEFT JOIN directors d ON fd.director_id = d.id
-            WHERE
-            """;
-    private static final String SEARCH_BY_TITLE = """
-            UPPER(f.NAME) LIKE UPPER(?)
-            """;
-    private static final String SEARCH_BY_DIRECTOR = """
-            UPPER(d.NAME) LIKE UPPER(?)
-            """;
-    private static final String SORT_FOR_SEARCH = """
-            ORDER BY likes_count DESC, f.ID;
+    private static final String GET_FILM_DIRECTOR_IDS_QUERY = """
+            SELECT director_id FROM film_directors WHERE film_id = ?;
             """;
-    private static final String DELETE_FILM_DIRECTORS_BY_ID = """
-            DELETE FROM film_directors WHERE film_id = ?;
+    private static final String DELETE_FILM_DIRECTOR_QUERY = """
+            DELETE FROM film_directors WHERE film_id = ? AND director_id = ?;
             """;
 
-    private static final String FIND_DIRECTORS_ID_BY_FILM_ID_QUERY = """
-            SELECT d.id,
-                   d.name
-            FROM directors d
-            JOIN film_directors fd
-            ON d.id = fd.director_id
-            WHERE fd.film_id = ?;
-            """;
-
-    private static final String GET_POPULAR_FILMS_BY_GENRE_AND_YEAR = """
-            SELECT f.*, m.id AS mpa_id, m.name AS mpa_name, m.description AS mpa_description
-            FROM films f
-            JOIN mpa_rating m ON f.mpa_rating_id = m.id
-            LEFT JOIN film_genres fg ON f.id = fg.film_id
-            WHERE (fg.genre_id = ? OR ?) AND (EXTRACT(YEAR FROM f.release_date) = ? OR ?)
-            GROUP BY f.id
-            ORDER BY (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.id) DESC
-            LIMIT ?
-            """;
-
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
-        super(jdbcTemplate);
+    private final FilmHydrator filmHydrator;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmSuggestTrie filmSuggestTrie;
+    private final EntityIdRegistry entityIdRegistry;
+    private final int streamChunkSize;
+
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, FilmHydrator filmHydrator,
+                         FilmPopularityIndex filmPopularityIndex, FilmLikeMatrix filmLikeMatrix,
+                         FilmSearchIndex filmSearchIndex, FilmSuggestTrie filmSuggestTrie,
+                         ReferenceDataCache referenceDataCache, EntityIdRegistry entityIdRegistry,
+                         @Value("${filmorate.streaming.chunk-size:500}") int streamChunkSize) {
+        super(jdbcTemplate, referenceDataCache);
+        this.filmHydrator = filmHydrator;
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.filmSearchIndex = filmSearchIndex;
+        this.filmSuggestTrie = filmSuggestTrie;
+        this.entityIdRegistry = entityIdRegistry;
+        this.streamChunkSize = streamChunkSize;
     }
 
     // Создание фильма –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
@@ -242,16 +253,99 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
         // Сохранение жанров фильма в БД
         addFilmGenres(film.getGenres(), filmId);
         saveFilmDirectors(film.getId().longValue(), film.getDirectors());
+        afterCommit(() -> {
+            filmPopularityIndex.putFilm(filmId, film.getReleaseDate(), genreIds(film), 0);
+            filmSearchIndex.putFilm(filmId, film.getName(), directorIds(film));
+            filmSuggestTrie.putFilm(filmId, film.getName());
+            entityIdRegistry.add(TypeEntity.FILM, filmId);
+        });
         log.info("Film created: {}", filmId);
 
         return film;
     }
 
+    /**
+     * Создание пачки фильмов: строки фильмов вставляются одним пакетом с получением сгенерированных id,
+     * жанры и режиссеры всех фильмов - еще двумя пакетами. Ссылки на справочники должны быть проверены
+     * заранее через {@link #checkReferences(Film)}.
+     *
+     * @param films новые фильмы; после сохранения им присваиваются id
+     */
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(CREATE_FILM_QUERY, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        ps.setInt(4, film.getDuration().intValue());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> genreRows = new ArrayList<>();
+        List<Object[]> directorRows = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            int filmId = ((Number) keys.get(i).values().iterator().next()).intValue();
+            film.setId(filmId);
+            genreIds(film).forEach(genreId -> genreRows.add(new Object[]{filmId, genreId}));
+            directorIds(film).forEach(directorId -> directorRows.add(new Object[]{filmId, directorId}));
+        }
+        jdbcTemplate.batchUpdate(ADD_FILM_GENRES_QUERY, genreRows);
+        jdbcTemplate.batchUpdate(INSERT_FILM_DIRECTOR_QUERY, directorRows);
+
+        // индексы обновляются только после фиксации всей пачки
+        afterCommit(() -> {
+            for (Film film : films) {
+                filmPopularityIndex.putFilm(film.getId(), film.getReleaseDate(), genreIds(film), 0);
+                filmSearchIndex.putFilm(film.getId(), film.getName(), directorIds(film));
+                filmSuggestTrie.putFilm(film.getId(), film.getName());
+                entityIdRegistry.add(TypeEntity.FILM, film.getId());
+            }
+        });
+        log.info("Films created: {}", films.size());
+        return films;
+    }
+
+    /**
+     * Проверка ссылок нового фильма на рейтинг, жанры и режиссеров по справочникам в памяти.
+     *
+     * @throws ValidationException если рейтинг не указан
+     * @throws NotFoundException   если рейтинг, жанр или режиссер не существует
+     */
+    public void checkReferences(Film film) {
+        if (film.getMpa() == null || film.getMpa().getId() == null) {
+            throw new ValidationException("Mpa не может быть пустой");
+        }
+        checkMpaRating(film);
+        checkEntitiesExist(genreIds(film), TypeEntity.GENRE);
+        checkEntitiesExist(directorIds(film), TypeEntity.DIRECTOR);
+    }
+
     // Обновление фильма –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
+    @Transactional
     public Film update(Film film) {
         checkFilm(film);
         checkMpaRating(film);
+        Set<Integer> genreIds = genreIds(film);
+        Set<Integer> directorIds = directorIds(film);
+        checkEntitiesExist(genreIds, TypeEntity.GENRE);
+        checkEntitiesExist(directorIds, TypeEntity.DIRECTOR);
 
         jdbcTemplate.update(
                 UPDATE_FILM_QUERY,
@@ -262,17 +356,27 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
                 film.getMpa().getId(),
                 film.getId());
 
-        // Обновление жанров фильма
-        jdbcTemplate.update(DELETE_FILM_GENRES_BY_ID, film.getId());
-        addFilmGenres(film.getGenres(), film.getId());
-        // обновить режиссеров фильма
-        jdbcTemplate.update(DELETE_FILM_DIRECTORS_BY_ID, film.getId());
+        // Обновление жанров и режиссеров: изменяются только добавленные и удаленные связи
+        applyLinksDiff(film.getId(), GET_FILM_GENRE_IDS_QUERY, genreIds, ADD_FILM_GENRES_QUERY, DELETE_FILM_GENRE_QUERY);
+        applyLinksDiff(film.getId(), GET_FILM_DIRECTOR_IDS_QUERY, directorIds,
+                INSERT_FILM_DIRECTOR_QUERY, DELETE_FILM_DIRECTOR_QUERY);
         // сортируем жанры
-        saveFilmDirectors(film.getId().longValue(), film.getDirectors());
         Set<Genre> sortedGenres = film.getGenres().stream()
                 .sorted(Comparator.comparingInt(Genre::getId))
                 .collect(Collectors.toCollection(LinkedHashSet::new));
         film.setGenres(sortedGenres);
+        int filmId = film.getId();
+        String name = film.getName();
+        LocalDate releaseDate = film.getReleaseDate();
+        afterCommit(() -> {
+            filmPopularityIndex.updateFilm(filmId, releaseDate, genreIds);
+            // вес подсказок меняется и у снятых с фильма режиссеров, и у добавленных
+            Set<Integer> affectedDirectors = new HashSet<>(filmSearchIndex.directorsOfFilm(filmId));
+            affectedDirectors.addAll(directorIds);
+            filmSearchIndex.putFilm(filmId, name, directorIds);
+            filmSuggestTrie.putFilm(filmId, name);
+            filmSuggestTrie.refreshDirectors(affectedDirectors);
+        });
 
         log.info("Film updated: {}", film.getId());
         return film;
@@ -283,11 +387,68 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
     public List<Film> getAll() {
 
         List<FilmDto> films = jdbcTemplate.query(GET_ALL_FILMS_QUERY, new FilmRowMapper());
-        films.forEach(this::addGenresAndLikesToFilm);
+        filmHydrator.hydrate(films);
 
         return films.stream().map(FilmMapper::mapToFilm).toList();
     }
 
+    /**
+     * Страница фильмов по возрастанию id, начиная после {@code afterId}.
+     * Условие по индексу первичного ключа не зависит от глубины страницы, в отличие от OFFSET.
+     *
+     * @param afterId id последнего фильма предыдущей страницы или {@code null} для первой страницы
+     * @param limit   размер страницы
+     */
+    @Override
+    public List<Film> getPage(Integer afterId, int limit) {
+        List<FilmDto> films = jdbcTemplate.query(GET_FILMS_PAGE_QUERY, new FilmRowMapper(),
+                afterId == null ? 0 : afterId, limit);
+        filmHydrator.hydrate(films);
+
+        return films.stream().map(FilmMapper::mapToFilm).toList();
+    }
+
+    /**
+     * Последовательная выдача всех фильмов по возрастанию id без загрузки таблицы целиком.
+     * Строки читаются курсором, связи загружаются пачками по {@code filmorate.streaming.chunk-size} фильмов,
+     * поэтому в памяти одновременно находится не больше одной пачки.
+     *
+     * @param consumer  получатель фильмов
+     */
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        FilmRowMapper rowMapper = new FilmRowMapper();
+        List<FilmDto> chunk = new ArrayList<>(streamChunkSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(STREAM_ALL_FILMS_QUERY);
+            ps.setFetchSize(streamChunkSize);
+            return ps;
+        }, rs -> {
+            chunk.add(rowMapper.mapRow(rs, rs.getRow()));
+            if (chunk.size() >= streamChunkSize) {
+                emitChunk(chunk, consumer);
+            }
+        });
+        emitChunk(chunk, consumer);
+    }
+
+    /**
+     * Выгрузка каталога одним упорядоченным запросом с курсором.
+     * Строки одного фильма идут подряд, поэтому фильм собирается из них и передается получателю,
+     * как только начинается следующий; в памяти находится только текущий фильм.
+     *
+     * @param consumer получатель фильмов с жанрами, режиссерами, рейтингом и количеством лайков
+     */
+    public void exportAll(Consumer<FilmExportDto> consumer) {
+        FilmExportAssembler assembler = new FilmExportAssembler(consumer);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXPORT_FILMS_QUERY);
+            ps.setFetchSize(streamChunkSize);
+            return ps;
+        }, assembler);
+        assembler.flush();
+    }
+
     // Получение фильма по id ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
     public Optional<Film> getById(Integer id) {
@@ -301,7 +462,7 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
 
             // 2. Если фильм найден, дополняем его данными
             if (filmDto != null) {
-                addGenresAndLikesToFilm(filmDto);
+                filmHydrator.hydrate(List.of(filmDto));
                 return Optional.of(FilmMapper.mapToFilm(filmDto));
             }
             return Optional.empty();
@@ -311,32 +472,82 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
         }
     }
 
-    // Добавление лайка фильму –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    // Получение фильмов по списку id с сохранением порядка ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @Override
+    public List<Film> getByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, FilmDto> filmsById = new HashMap<>();
+        jdbcTemplate.query(String.format(GET_FILMS_BY_IDS_QUERY, placeholders(ids.size())), new FilmRowMapper(), ids.toArray())
+                .forEach(filmDto -> filmsById.put(filmDto.getId(), filmDto));
+
+        List<FilmDto> films = ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        filmHydrator.hydrate(films);
+
+        return films.stream().map(FilmMapper::mapToFilm).toList();
+    }
+
+    /**
+     * Добавление лайка фильму. Повторный лайк ничего не меняет: строка вставляется одним MERGE только
+     * при ее отсутствии, и только тогда в той же транзакции увеличивается счетчик лайков.
+     * Существование фильма и пользователя проверяется вызывающим кодом.
+     *
+     * @return {@code true}, если лайк добавлен или уже был
+     */
     @Override
+    @Transactional
     public Optional<Boolean> addLike(Integer filmId, Integer userId) {
-        removeLike(filmId, userId);
-        int rowsUpdated = jdbcTemplate.update(ADD_LIKE_TO_FILM_QUERY, userId, filmId);
-        return Optional.of(rowsUpdated > 0);
+        int rowsInserted = jdbcTemplate.update(MERGE_LIKE_QUERY, userId, filmId);
+        if (rowsInserted > 0) {
+            updateLikesCount(filmId, rowsInserted);
+            afterCommit(() -> filmLikeMatrix.like(userId, filmId));
+        }
+        return Optional.of(true);
     }
 
     // Удаление лайка фильму –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
+    @Transactional
     public Optional<Boolean> removeLike(Integer filmId, Integer userId) {
         int rowsDeleted = jdbcTemplate.update(DELETE_LIKE_TO_FILM_QUERY, userId, filmId);
+        updateLikesCount(filmId, -rowsDeleted);
+        if (rowsDeleted > 0) {
+            afterCommit(() -> filmLikeMatrix.unlike(userId, filmId));
+        }
         return Optional.of(rowsDeleted > 0);
     }
 
-    // Получение списка популярных фильмов –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
-    @Override
-    public List<Film> getPopularFilm(Integer count) {
-        List<FilmDto> popularFilms = jdbcTemplate.query(GET_POPULAR_FILM_QUERY, new FilmRowMapper(), count);
-
-        // загрузить жанры, режиссеров и лайки для выбранных фильмов
-        popularFilms.forEach(this::addGenresAndLikesToFilm);
-
-        return popularFilms.stream()
-                .map(FilmMapper::mapToFilm)
-                .toList();
+    /**
+     * Пакетная запись накопленных изменений лайков: вставки одним пакетом MERGE, удаления - одним пакетом DELETE,
+     * счетчики - по одному UPDATE на фильм с суммарным изменением. Индексы в памяти не меняются:
+     * отложенные изменения применяются к ним в момент запроса.
+     *
+     * @param changes изменения, не более одного на пару (фильм, пользователь)
+     */
+    @Transactional
+    public void applyLikes(List<LikeChange> changes) {
+        List<LikeChange> likes = changes.stream().filter(LikeChange::liked).toList();
+        List<LikeChange> unlikes = changes.stream().filter(change -> !change.liked()).toList();
+        Map<Integer, Integer> deltas = new HashMap<>();
+        int[] inserted = jdbcTemplate.batchUpdate(MERGE_LIKE_QUERY,
+                likes.stream().map(like -> new Object[]{like.userId(), like.filmId()}).toList());
+        for (int i = 0; i < inserted.length; i++) {
+            deltas.merge(likes.get(i).filmId(), rowsAffected(inserted[i]), Integer::sum);
+        }
+        int[] deleted = jdbcTemplate.batchUpdate(DELETE_LIKE_TO_FILM_QUERY,
+                unlikes.stream().map(unlike -> new Object[]{unlike.userId(), unlike.filmId()}).toList());
+        for (int i = 0; i < deleted.length; i++) {
+            deltas.merge(unlikes.get(i).filmId(), -rowsAffected(deleted[i]), Integer::sum);
+        }
+        jdbcTemplate.batchUpdate(UPDATE_LIKES_COUNT_QUERY, deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList());
     }
 
     /**
@@ -359,27 +570,29 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
 
         // Удаляем фильм
         jdbcTemplate.update("DELETE FROM films WHERE id = ?", id);
+        afterCommit(() -> {
+            filmPopularityIndex.remove(id);
+            filmLikeMatrix.removeFilm(id);
+            Set<Integer> directorIds = filmSearchIndex.directorsOfFilm(id);
+            filmSearchIndex.removeFilm(id);
+            filmSuggestTrie.removeFilm(id);
+            filmSuggestTrie.refreshDirectors(directorIds);
+            entityIdRegistry.remove(TypeEntity.FILM, id);
+        });
     }
 
     /**
-     * Проверяет существование фильма в базе данных по указанному идентификатору.
+     * Проверяет существование фильма по указанному идентификатору.
      * <p>
-     * Метод выполняет оптимизированный запрос к базе данных, используя оператор EXISTS,
-     * который прекращает поиск после нахождения первой записи.
+     * Проверка выполняется по реестру id в памяти ({@link EntityIdRegistry}) без запроса к базе.
      * </p>
      *
-     * @param id идентификатор фильма для проверки (должен быть не null)
-     * @return true - если фильм с указанным ID существует, false - если не существует
+     * @param id идентификатор фильма для проверки
+     * @return true - если фильм с указанным ID существует, false - если не существует или id равен null
      */
     @Override
     public boolean existsById(Integer id) {
-        String sql = "SELECT EXISTS(SELECT 1 FROM films WHERE id = ?)";
-        try {
-            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
-        } catch (DataAccessException e) {
-            log.error("Проверка ошибки существование пленки с идентификатором: {}", id, e);
-            return false;
-        }
+        return entityIdRegistry.contains(TypeEntity.FILM, id);
     }
 
     /**
@@ -391,31 +604,8 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
      * @return список фильмов, понравившихся обоим пользователям.
      */
     public List<Film> getCommonFilms(Integer userId, Integer friendId) {
-        Map<Integer, List<Integer>> likes = setUpLikes();
-        Map<Integer, List<GenreDto>> genres = setUpGenres();
-        Map<Integer, Set<DirectorDto>> directors = setUpDirectors();
-
         List<FilmDto> films = jdbcTemplate.query(GET_COMMON_FILMS, new FilmRowMapper(), userId, friendId);
-        List<FilmDto> filmsToResponse = addGenresAndLikesToFilmList(films, likes, genres, directors);
-
-        return filmsToResponse.stream().map(FilmMapper::mapToFilm).toList();
-    }
-
-    @Override
-    public List<Film> getPopularFilmsByGenreAndYear(int count, Integer genreId, Integer year) {
-        Map<Integer, List<Integer>> likes = setUpLikes();
-        Map<Integer, List<GenreDto>> genres = setUpGenres();
-        Map<Integer, Set<DirectorDto>> directors = setUpDirectors();
-
-        List<FilmDto> films;
-        try {
-            films = jdbcTemplate.query(GET_POPULAR_FILMS_BY_GENRE_AND_YEAR, new FilmRowMapper(), genreId, genreId == null, year, year == null, count);
-        } catch (DataAccessException e) {
-            System.err.println("Ошибка при выполнении запроса: " + e.getMessage());
-            return Collections.emptyList();
-        }
-
-        List<FilmDto> filmsToResponse = addGenresAndLikesToFilmList(films, likes, genres, directors);
+        List<FilmDto> filmsToResponse = filmHydrator.hydrate(films);
 
         return filmsToResponse.stream().map(FilmMapper::mapToFilm).toList();
     }
@@ -424,49 +614,22 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
         return new HashSet<>(jdbcTemplate.queryForList(GET_LIKED_FILMS_BY_USER_ID_QUERY, Integer.class, userId));
     }
 
+    /**
+     * Поиск фильмов по подстроке в названии и (или) имени режиссера.
+     * Кандидаты и их порядок определяются поисковым индексом, из базы загружается только первая страница.
+     */
     @Override
-    public List<Film> search(String query, List<String> by) {
-        Map<Integer, List<Integer>> likes = setUpLikes();
-        Map<Integer, List<GenreDto>> genres = setUpGenres();
-        Map<Integer, Set<DirectorDto>> directors = setUpDirectors();
-
-        List<FilmDto> searchedFilms = runSearchFilmByQuery(query, by);
-
-        addGenresAndLikesToFilmList(searchedFilms, likes, genres, directors);
-
-        return searchedFilms.stream().map(FilmMapper::mapToFilm).toList();
-    }
-
-    private List<FilmDto> runSearchFilmByQuery(String query, List<String> by) {
-        final String SQLQuery;
-        if (by.contains("director") && by.contains("title")) {
-            SQLQuery = BASE_SEARCH_FILM + SEARCH_BY_TITLE + " OR " + SEARCH_BY_DIRECTOR + SORT_FOR_SEARCH;
-            return jdbcTemplate.query(conntection -> {
-                PreparedStatement statement = conntection.prepareStatement(SQLQuery);
-                statement.setString(1, "%" + query + "%");
-                statement.setString(2, "%" + query + "%");
-                return statement;
-            }, new FilmRowMapper());
-        } else if (by.contains("director")) {
-            SQLQuery = BASE_SEARCH_FILM + SEARCH_BY_DIRECTOR + SORT_FOR_SEARCH;
-        } else if (by.contains("title")) {
-            SQLQuery = BASE_SEARCH_FILM + SEARCH_BY_TITLE + SORT_FOR_SEARCH;
-        } else {
-            throw new RuntimeException("Неподходящий параметр запроса");
-        }
-        return jdbcTemplate.query(connection -> {
-            PreparedStatement statement = connection.prepareStatement(SQLQuery);
-            statement.setString(1, "%" + query + "%");
-            return statement;
-        }, new FilmRowMapper());
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, int count) {
+        return getByIds(filmSearchIndex.search(query, byTitle, byDirector, count));
     }
 
-
     //--- Получение фильмов режиссера, отсортированных по годам или лайкам ---------------------------------------------
     public Collection<Film> getFilmsDirector(Long directorId, String sortBy) {
         List<FilmDto> films = new ArrayList<>();
         if (sortBy.equals("likes")) {
             films = jdbcTemplate.query(FIND_FILMS_DIRECTORS_FOR_LIKES, new FilmRowMapper(), directorId);
+            films.sort(Comparator.comparingInt((FilmDto film) -> filmPopularityIndex.getLikes(film.getId())).reversed()
+                    .thenComparingInt(FilmDto::getId));
         } else if (sortBy.equals("year")) {
             films = jdbcTemplate.query(FIND_FILMS_DIRECTORS_FOR_DATES, new FilmRowMapper(), directorId);
         } else {
@@ -474,7 +637,7 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
         }
 
         // загрузить жанры, режиссеров и лайки для всех фильмов
-        films.forEach(this::addGenresAndLikesToFilm);
+        filmHydrator.hydrate(films);
 
         return films.stream()
                 .map(FilmMapper::mapToFilm)
@@ -485,44 +648,46 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
 
     private void addFilmGenres(Set<Genre> genresSet, int id) {
         if (genresSet != null && !genresSet.isEmpty()) {
-            genresSet.forEach(this::checkGenre);
-            genresSet.forEach(genre -> jdbcTemplate.update(ADD_FILM_GENRES_QUERY, id, genre.getId()));
+            checkEntitiesExist(genresSet.stream().map(Genre::getId).toList(), TypeEntity.GENRE);
+            Set<Integer> genreIds = genresSet.stream().map(Genre::getId).collect(Collectors.toSet());
+            batchLinks(ADD_FILM_GENRES_QUERY, id, genreIds);
         }
     }
 
-    // Получение жанров фильма –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
-
-    private Set<GenreDto> loadGenresForFilm(Integer id) {
-        return new HashSet<>(jdbcTemplate.query(GET_GENRES_ID_FOR_FILM_ID_QUERY, new GenreDtoRowMapper(), id));
+    // Обновление счетчика лайков в БД и, после фиксации, в рейтинге
+    private void updateLikesCount(Integer filmId, int delta) {
+        if (delta != 0) {
+            jdbcTemplate.update(UPDATE_LIKES_COUNT_QUERY, delta, filmId);
+            afterCommit(() -> {
+                filmPopularityIndex.adjust(filmId, delta);
+                filmSuggestTrie.likesChanged(filmId);
+            });
+        }
     }
 
-    // Получение лайков фильма –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
-
-    private Set<Integer> loadLikesForFilm(Integer id) {
-        return new HashSet<>(jdbcTemplate.queryForList(GET_LIKES_BY_FILM_ID_QUERY, Integer.class, id));
+    // Драйвер может не сообщать число строк в пакете; тогда считается, что оператор изменил одну строку
+    private static int rowsAffected(int count) {
+        return count == Statement.SUCCESS_NO_INFO ? 1 : count;
     }
 
-    // Преобразование ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
-
-    private void addGenresAndLikesToFilm(FilmDto filmDto) {
-        Integer filmId = filmDto.getId();
-        filmDto.setGenres(loadGenresForFilm(filmId));
-        filmDto.setDirectors(loadDirectorsForFilm(Long.valueOf(filmId)));
-        filmDto.setLikes(loadLikesForFilm(filmId));
+    private void emitChunk(List<FilmDto> chunk, Consumer<Film> consumer) {
+        filmHydrator.hydrate(chunk);
+        chunk.forEach(filmDto -> consumer.accept(FilmMapper.mapToFilm(filmDto)));
+        chunk.clear();
     }
 
-    //Наполнение фильма
-    private List<FilmDto> addGenresAndLikesToFilmList(List<FilmDto> films,
-                                                      Map<Integer, List<Integer>> likes,
-                                                      Map<Integer, List<GenreDto>> genres,
-                                                      Map<Integer, Set<DirectorDto>> directors) {
-        films.forEach(filmDto -> {
-            filmDto.setGenres(new HashSet<>(genres.getOrDefault(filmDto.getId(), List.of())));
-            filmDto.setLikes(new HashSet<>(likes.getOrDefault(filmDto.getId(), List.of())));
-            filmDto.setDirectors(new HashSet<>(directors.getOrDefault(filmDto.getId(), Set.of())));
-        });
+    private static Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
+        }
+        return film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+    }
 
-        return films;
+    private static Set<Integer> directorIds(Film film) {
+        if (film.getDirectors() == null) {
+            return Set.of();
+        }
+        return film.getDirectors().stream().map(Director::getId).collect(Collectors.toSet());
     }
 
     // Проверка существования фильма
@@ -530,95 +695,105 @@ public class FilmDbStorage extends BaseDbStorage implements FilmStorage {
         checkEntityExist(film.getId(), TypeEntity.FILM);
     }
 
-    // Проверка существования жанра
-    private void checkGenre(Genre genre) {
-        checkEntityExist(genre.getId(), TypeEntity.GENRE);
-    }
-
     // Проверка существования рейтинга
 
     private void checkMpaRating(Film film) {
         checkEntityExist(film.getMpa().getId(), TypeEntity.RATING);
     }
 
-    private Map<Integer, List<GenreDto>> setUpGenres() {
-        String sql = """
-                SELECT fg.film_id, g.*
-                FROM film_genres fg
-                JOIN genres g ON fg.GENRE_ID = g.genre_id
-                """;
-
-        Map<Integer, List<GenreDto>> filmGenres = jdbcTemplate.query(sql, rs -> {
-            Map<Integer, List<GenreDto>> genres = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("film_id");
-                genres.computeIfAbsent(filmId, k -> new ArrayList<>())
-                        .add(GenreDto.builder()
-                                .id(rs.getInt("genre_id"))
-                                .name(rs.getString("name"))
-                                .build());
-            }
-            return genres;
-        });
-        return filmGenres;
-    }
-
-    private Map<Integer, Set<DirectorDto>> setUpDirectors() {
-        String sql = """
-                SELECT fd.film_id,
-                       d.NAME AS director_name,
-                       d.ID AS director_id
-                FROM FILM_DIRECTORS fd
-                JOIN DIRECTORS d ON fd.DIRECTOR_ID = d.ID
-                """;
-
-        Map<Integer, Set<DirectorDto>> filmDirectors = jdbcTemplate.query(sql, rs -> {
-            Map<Integer, Set<DirectorDto>> directors = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("film_id");
-                directors.computeIfAbsent(filmId, k -> new HashSet<>())
-                        .add(DirectorDto.builder()
-                                .id(rs.getLong("director_id"))
-                                .name(rs.getString("director_name"))
-                                .build());
-            }
-            return directors;
-        });
-        return filmDirectors;
-    }
-
-    private Map<Integer, List<Integer>> setUpLikes() {
-        String sqlLikes = """
-                SELECT f.id, fl.user_id
-                FROM film_likes fl
-                JOIN films f ON fl.film_id = f.id
-                """;
-
-        Map<Integer, List<Integer>> filmLikes = jdbcTemplate.query(sqlLikes, rs -> {
-            Map<Integer, List<Integer>> likes = new HashMap<>();
-            while (rs.next()) {
-                Integer filmId = rs.getInt("id");
-                likes.computeIfAbsent(filmId, k -> new ArrayList<>())
-                        .add(rs.getInt("user_id"));
-            }
-            return likes;
-        });
-        return filmLikes;
+    private void saveFilmDirectors(Long filmId, Set<Director> directors) {
+        if (directors != null && !directors.isEmpty()) {
+            checkEntitiesExist(directors.stream().map(Director::getId).toList(), TypeEntity.DIRECTOR);
+            Set<Integer> directorIds = directors.stream().map(Director::getId).collect(Collectors.toSet());
+            batchLinks(INSERT_FILM_DIRECTOR_QUERY, filmId.intValue(), directorIds);
+        }
     }
 
-    private void checkDirectorExists(Director director) {
-        checkEntityExists(director.getId(), TypeEntity.DIRECTOR);
+    /**
+     * Приведение связей фильма к нужному набору: удаляются лишние строки, вставляются недостающие,
+     * неизменные строки не затрагиваются.
+     *
+     * @param filmId       идентификатор фильма
+     * @param currentQuery запрос текущих id связанных сущностей
+     * @param target       требуемый набор id
+     * @param insertQuery  вставка связи (film_id, id)
+     * @param deleteQuery  удаление связи (film_id, id)
+     */
+    private void applyLinksDiff(int filmId, String currentQuery, Set<Integer> target,
+                                String insertQuery, String deleteQuery) {
+        Set<Integer> current = new HashSet<>(jdbcTemplate.queryForList(currentQuery, Integer.class, filmId));
+        batchLinks(deleteQuery, filmId, current.stream().filter(id -> !target.contains(id)).toList());
+        batchLinks(insertQuery, filmId, target.stream().filter(id -> !current.contains(id)).toList());
     }
 
-    private Set<DirectorDto> loadDirectorsForFilm(Long filmId) {
-        return new HashSet<>(jdbcTemplate.query(FIND_DIRECTORS_ID_BY_FILM_ID_QUERY, new DirectorDtoRowMapper(), filmId));
+    // Пакетная запись связей (film_id, id) одним batchUpdate
+    private void batchLinks(String query, int filmId, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(query, ids.stream().map(id -> new Object[]{filmId, id}).toList());
     }
 
-    private void saveFilmDirectors(Long filmId, Set<Director> directors) {
-        if (directors != null && !directors.isEmpty()) {
-            directors.forEach(this::checkDirectorExists);
-            directors.forEach(director -> jdbcTemplate.update(INSERT_FILM_DIRECTOR_QUERY, filmId, director.getId()));
-        }
+    /**
+     * Изменение лайка для пакетной записи.
+     *
+     * @param filmId идентификатор фильма
+     * @param userId идентификатор пользователя
+     * @param liked  {@code true} - лайк поставлен, {@code false} - удален
+     */
+    public record LikeChange(int filmId, int userId, boolean liked) {
     }
 
-}
\ No newline at end of file
+    // Сборка фильма из подряд идущих строк выгрузки
+    private static class FilmExportAssembler implements RowCallbackHandler {
+        private final Consumer<FilmExportDto> consumer;
+        private final Map<Integer, GenreDto> genres = new LinkedHashMap<>();
+        private final Map<Long, DirectorDto> directors = new LinkedHashMap<>();
+        private FilmExportDto current;
+
+        FilmExportAssembler(Consumer<FilmExportDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int filmId = rs.getInt("id");
+            if (current == null || current.getId() != filmId) {
+                flush();
+                Date releaseDate = rs.getDate("release_date");
+                int mpaId = rs.getInt("mpa_id");
+                MpaDto mpa = rs.wasNull() ? null
+                        : new MpaDto(mpaId, rs.getString("mpa_name"), rs.getString("mpa_description"));
+                current = FilmExportDto.builder()
+                        .id(filmId)
+                        .name(rs.getString("name"))
+                        .description(rs.getString("description"))
+                        .releaseDate(releaseDate != null ? releaseDate.toLocalDate() : null)
+                        .duration(rs.getLong("duration"))
+                        .mpa(mpa)
+                        .likes(rs.getInt("likes_count"))
+                        .build();
+            }
+            // из-за соединения с двумя таблицами жанр и режиссер повторяются, дубли отбрасываются
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                genres.putIfAbsent(genreId, new GenreDto(genreId, rs.getString("genre_name")));
+            }
+            long directorId = rs.getLong("director_id");
+            if (!rs.wasNull()) {
+                directors.putIfAbsent(directorId, new DirectorDto(directorId, rs.getString("director_name")));
+            }
+        }
+
+        void flush() {
+            if (current != null) {
+                current.setGenres(new ArrayList<>(genres.values()));
+                current.setDirectors(new ArrayList<>(directors.values()));
+                consumer.accept(current);
+                current = null;
+            }
+            genres.clear();
+            directors.clear();
+        }
+    }
+}
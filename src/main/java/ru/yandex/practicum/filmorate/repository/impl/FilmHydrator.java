@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.repository.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Наполнение фильмов жанрами, режиссерами и лайками.
+ * <p>
+ * Принимает список фильмов, полученных любым основным запросом, и загружает связанные данные
+ * пачками по {@code filmorate.hydration.batch-size} идентификаторов: три запроса {@code IN (...)}
+ * на пачку вместо трех запросов на каждый фильм.
+ * </p>
+ * При отложенной записи лайков ({@code filmorate.likes.write-behind.enabled}) в {@code film_likes} еще нет
+ * лайков из буфера, поэтому лайки берутся из {@link FilmLikeMatrix}: это строки {@code film_likes}
+ * с уже примененными изменениями буфера, те же, по которым упорядочены популярные фильмы.
+ */
+@Slf4j
+@Component
+public class FilmHydrator {
+    private static final String GET_GENRES_BY_FILM_IDS_QUERY = """
+            SELECT fg.film_id,
+                   g.genre_id,
+                   g.name
+            FROM film_genres fg
+            JOIN genres g ON fg.genre_id = g.genre_id
+            WHERE fg.film_id IN (%s);
+            """;
+    private static final String GET_DIRECTORS_BY_FILM_IDS_QUERY = """
+            SELECT fd.film_id,
+                   d.id,
+                   d.name
+            FROM film_directors fd
+            JOIN directors d ON fd.director_id = d.id
+            WHERE fd.film_id IN (%s);
+            """;
+    private static final String GET_LIKES_BY_FILM_IDS_QUERY = """
+            SELECT film_id,
+                   user_id
+            FROM film_likes
+            WHERE film_id IN (%s);
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final int batchSize;
+    private final boolean likesWriteBehind;
+    private final AtomicLong rowsLoaded = new AtomicLong();
+
+    public FilmHydrator(JdbcTemplate jdbcTemplate, FilmLikeMatrix filmLikeMatrix,
+                        @Value("${filmorate.hydration.batch-size:500}") int batchSize,
+                        @Value("${filmorate.likes.write-behind.enabled:false}") boolean likesWriteBehind) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("filmorate.hydration.batch-size должен быть положительным");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.batchSize = batchSize;
+        this.likesWriteBehind = likesWriteBehind;
+    }
+
+    /**
+     * Заполняет жанры, режиссеров и лайки для переданных фильмов.
+     * Порядок списка сохраняется, повторяющиеся фильмы получают одинаковые данные.
+     *
+     * @param films фильмы после основного запроса
+     * @return тот же список с заполненными связями
+     */
+    public List<FilmDto> hydrate(List<FilmDto> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        List<Integer> filmIds = films.stream().map(FilmDto::getId).distinct().toList();
+        Map<Integer, Set<GenreDto>> genres = new HashMap<>();
+        Map<Integer, Set<DirectorDto>> directors = new HashMap<>();
+        Map<Integer, Set<Integer>> likes = new HashMap<>();
+
+        for (int from = 0; from < filmIds.size(); from += batchSize) {
+            List<Integer> chunk = filmIds.subList(from, Math.min(from + batchSize, filmIds.size()));
+            loadGenres(chunk, genres);
+            loadDirectors(chunk, directors);
+            if (likesWriteBehind) {
+                likesFromMatrix(chunk, likes);
+            } else {
+                loadLikes(chunk, likes);
+            }
+        }
+
+        films.forEach(filmDto -> {
+            Integer filmId = filmDto.getId();
+            filmDto.setGenres(genres.getOrDefault(filmId, new HashSet<>()));
+            filmDto.setDirectors(directors.getOrDefault(filmId, new HashSet<>()));
+            filmDto.setLikes(likes.getOrDefault(filmId, new HashSet<>()));
+        });
+        log.debug("Наполнено фильмов: {}, запросов: {}", filmIds.size(),
+                (likesWriteBehind ? 2 : 3) * ((filmIds.size() - 1) / batchSize + 1));
+
+        return films;
+    }
+
+    // Загрузка жанров пачки ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private void loadGenres(List<Integer> filmIds, Map<Integer, Set<GenreDto>> genres) {
+        jdbcTemplate.query(String.format(GET_GENRES_BY_FILM_IDS_QUERY, BaseDbStorage.placeholders(filmIds.size())), rs -> {
+            rowsLoaded.incrementAndGet();
+            genres.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>())
+                    .add(GenreDto.builder()
+                            .id(rs.getInt("genre_id"))
+                            .name(rs.getString("name"))
+                            .build());
+        }, filmIds.toArray());
+    }
+
+    // Загрузка режиссеров пачки ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private void loadDirectors(List<Integer> filmIds, Map<Integer, Set<DirectorDto>> directors) {
+        jdbcTemplate.query(String.format(GET_DIRECTORS_BY_FILM_IDS_QUERY, BaseDbStorage.placeholders(filmIds.size())), rs -> {
+            rowsLoaded.incrementAndGet();
+            directors.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>())
+                    .add(DirectorDto.builder()
+                            .id(rs.getLong("id"))
+                            .name(rs.getString("name"))
+                            .build());
+        }, filmIds.toArray());
+    }
+
+    // Загрузка лайков пачки ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private void loadLikes(List<Integer> filmIds, Map<Integer, Set<Integer>> likes) {
+        jdbcTemplate.query(String.format(GET_LIKES_BY_FILM_IDS_QUERY, BaseDbStorage.placeholders(filmIds.size())), rs -> {
+            rowsLoaded.incrementAndGet();
+            likes.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>())
+                    .add(rs.getInt("user_id"));
+        }, filmIds.toArray());
+    }
+
+    // Лайки пачки с учетом буфера отложенной записи ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private void likesFromMatrix(List<Integer> filmIds, Map<Integer, Set<Integer>> likes) {
+        for (Integer filmId : filmIds) {
+            int[] likers = filmLikeMatrix.likersOf(filmId);
+            if (likers.length > 0) {
+                Set<Integer> users = new HashSet<>(likers.length * 2);
+                for (int userId : likers) {
+                    users.add(userId);
+                }
+                likes.put(filmId, users);
+            }
+        }
+    }
+
+    /**
+     * Общее количество строк связей, прочитанных при наполнении с момента запуска.
+     * Позволяет убедиться, что объем чтения зависит от размера ответа, а не от размера каталога.
+     */
+    public long getRowsLoaded() {
+        return rowsLoaded.get();
+    }
+}
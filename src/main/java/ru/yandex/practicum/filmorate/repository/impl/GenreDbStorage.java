@@ -6,7 +6,7 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.repository.GenreStorage;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
-import ru.yandex.practicum.filmorate.rowMappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
 
 import java.util.Collection;
 import java.util.Objects;
@@ -14,30 +14,20 @@ import java.util.Objects;
 @Repository
 public class GenreDbStorage extends BaseDbStorage implements GenreStorage {
 
-    private static final String GET_GENRE_QUERY = """
-            SELECT * FROM genres WHERE genre_id = ?;
-            """;
-
-    private static final String GET_ALL_GENRE_QUERY = """
-            SELECT *
-            FROM genres
-            ORDER BY genre_id ASC;
-            """;
-
-    public GenreDbStorage(JdbcTemplate jdbcTemplate) {
-        super(jdbcTemplate);
+    public GenreDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceDataCache) {
+        super(jdbcTemplate, referenceDataCache);
     }
 
     @Override
     public Genre getGenre(Integer id) {
         Objects.requireNonNull(id, "Genre id can't be null");
         checkGenreExist(id);
-        return jdbcTemplate.queryForObject(GET_GENRE_QUERY, new GenreRowMapper(), id);
+        return referenceDataCache.getGenre(id).orElseThrow();
     }
 
     @Override
     public Collection<Genre> getAllGenres() {
-        return jdbcTemplate.query(GET_ALL_GENRE_QUERY, new GenreRowMapper());
+        return referenceDataCache.getAllGenres();
     }
 
     private void checkGenreExist(Integer id) {
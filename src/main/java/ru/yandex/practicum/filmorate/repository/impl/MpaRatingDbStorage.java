@@ -5,7 +5,7 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.repository.MpaRatingStorage;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
-import ru.yandex.practicum.filmorate.rowMappers.MpaRatingRowMapper;
+import ru.yandex.practicum.filmorate.repository.memory.ReferenceDataCache;
 
 import java.util.Collection;
 
@@ -14,31 +14,20 @@ import java.util.Objects;
 @Repository
 public class MpaRatingDbStorage extends BaseDbStorage implements MpaRatingStorage {
 
-    private static final String GET_MPA_RATING_BY_ID_QUERY = """
-            SELECT *
-            FROM mpa_rating
-            WHERE id = ?;
-            """;
-    private static final String GET_ALL_MPA_RATING_QUERY = """
-            SELECT *
-            FROM mpa_rating;
-            """;
-
-
-    public MpaRatingDbStorage(JdbcTemplate jdbcTemplate) {
-        super(jdbcTemplate);
+    public MpaRatingDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceDataCache) {
+        super(jdbcTemplate, referenceDataCache);
     }
 
     @Override
     public MpaRating getMpaRating(Integer id) {
         Objects.requireNonNull(id, "Rating id can't be null");
         checkMpaRatingExist(id);
-        return jdbcTemplate.queryForObject(GET_MPA_RATING_BY_ID_QUERY, new MpaRatingRowMapper(), id);
+        return referenceDataCache.getMpaRating(id).orElseThrow();
     }
 
     @Override
     public Collection<MpaRating> getAllMpaRatings() {
-        return jdbcTemplate.query(GET_ALL_MPA_RATING_QUERY, new MpaRatingRowMapper());
+        return referenceDataCache.getAllMpaRatings();
     }
 
     private void checkMpaRatingExist(Integer id) {
@@ -1,19 +1,28 @@
 package ru.yandex.practicum.filmorate.repository.impl;
 
+import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.repository.ReviewStorage;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
+import ru.yandex.practicum.filmorate.repository.memory.LruCache;
+import ru.yandex.practicum.filmorate.repository.memory.ReviewRankingIndex;
 import ru.yandex.practicum.filmorate.rowMappers.ReviewRowMapper;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Repository
@@ -34,16 +43,9 @@ public class ReviewDbStorage extends BaseDbStorage implements ReviewStorage {
     private static final String GET_REVIEW_BY_ID_QUERY = """
             SELECT * FROM reviews WHERE review_id = ?;
             """;
-    private static final String GET_REVIEWS_BY_FILM_ID_QUERY = """
+    private static final String GET_REVIEWS_BY_IDS_QUERY = """
             SELECT * FROM reviews
-            WHERE film_id = ?
-            ORDER BY useful DESC
-            LIMIT ?;
-            """;
-    private static final String GET_ALL_REVIEWS_QUERY = """
-            SELECT * FROM reviews
-            ORDER BY useful DESC
-            LIMIT ?;
+            WHERE review_id IN (%s);
             """;
     private static final String INCREMENT_USEFUL_QUERY = """
             UPDATE reviews SET useful = useful + 1 WHERE review_id = ?;
@@ -51,9 +53,20 @@ public class ReviewDbStorage extends BaseDbStorage implements ReviewStorage {
     private static final String DECREMENT_USEFUL_QUERY = """
             UPDATE reviews SET useful = useful - 1 WHERE review_id = ?;
             """;
+    private static final String INCREMENT_USEFUL_BY_QUERY = """
+            UPDATE reviews SET useful = useful + ? WHERE review_id = ?;
+            """;
 
-    public ReviewDbStorage(JdbcTemplate jdbcTemplate) {
+    private final ReviewRankingIndex reviewRankingIndex;
+    private final LruCache<Integer, Review> reviewCache;
+    // Растет после каждого изменения или удаления отзыва; строка, прочитанная до него, в кэш не попадает
+    private final AtomicLong version = new AtomicLong();
+
+    public ReviewDbStorage(JdbcTemplate jdbcTemplate, ReviewRankingIndex reviewRankingIndex,
+                           @Value("${filmorate.reviews.cache-size:10000}") int cacheSize) {
         super(jdbcTemplate);
+        this.reviewRankingIndex = reviewRankingIndex;
+        this.reviewCache = new LruCache<>(cacheSize);
     }
 
     /**
@@ -77,40 +90,38 @@ public class ReviewDbStorage extends BaseDbStorage implements ReviewStorage {
 
         Integer reviewId = keyHolder.getKey().intValue();
         review.setReviewId(reviewId);
+        reviewCache.put(reviewId, review.toBuilder().build());
         log.info("Review created: {}", reviewId);
         return review;
     }
 
     /**
-     * Обновление отзыва в БД
+     * Обновление отзыва в БД. Автор, фильм и полезность берутся из кэша, поэтому для отзыва из кэша
+     * выполняется только UPDATE
      *
      * @param review принимаемый для обновления отзыв
      */
     @Override
     public Review update(Review review) {
-        if (review.getReviewId() != null) {
-            checkEntityExist(review.getReviewId(), TypeEntity.REVIEW);
-        }
+        Review existing = findReview(review.getReviewId());
+        Review updated = existing.toBuilder()
+                .content(review.getContent())
+                .isPositive(review.getIsPositive())
+                .build();
 
-        Review reviewToUpdate = jdbcTemplate.queryForObject(
-                GET_REVIEW_BY_ID_QUERY,
-                new ReviewRowMapper(),
-                review.getReviewId());
-
-        jdbcTemplate.update(
-                UPDATE_REVIEW_QUERY,
-                review.getContent(),
-                review.getIsPositive(),
-                reviewToUpdate.getReviewId()
-        );
-
-        Review reviewToResponse = jdbcTemplate.queryForObject(
-                GET_REVIEW_BY_ID_QUERY,
-                new ReviewRowMapper(),
-                reviewToUpdate.getReviewId());
+        int rowsUpdated = jdbcTemplate.update(UPDATE_REVIEW_QUERY,
+                updated.getContent(), updated.getIsPositive(), updated.getReviewId());
+        if (rowsUpdated == 0) {
+            // отзыв удален после чтения; удаление уже убрало его из кэша
+            throw notFound(updated.getReviewId());
+        }
+        synchronized (reviewCache) {
+            version.incrementAndGet();
+            reviewCache.put(updated.getReviewId(), updated.toBuilder().build());
+        }
 
         log.info("Review updated: {}", review);
-        return reviewToResponse;
+        return updated;
     }
 
     /**
@@ -120,57 +131,52 @@ public class ReviewDbStorage extends BaseDbStorage implements ReviewStorage {
      */
     @Override
     public void removeById(Integer reviewId) {
-        checkEntityExist(reviewId, TypeEntity.REVIEW);
-        jdbcTemplate.update(DELETE_REVIEW_QUERY, reviewId);
+        int rowsDeleted = jdbcTemplate.update(DELETE_REVIEW_QUERY, reviewId);
+        synchronized (reviewCache) {
+            version.incrementAndGet();
+            reviewCache.remove(reviewId);
+        }
+        if (rowsDeleted == 0) {
+            throw notFound(reviewId);
+        }
         log.info("Review removed: {}", reviewId);
     }
 
     /**
-     * Получение отзыва из БД по идентификатору
+     * Получение отзыва по идентификатору: из кэша или одним запросом к БД
      *
      * @param reviewId идентификатор отзыва
      */
     @Override
     public Optional<Review> getReviewById(Integer reviewId) {
-        checkEntityExist(reviewId, TypeEntity.REVIEW);
-        Review review = jdbcTemplate.queryForObject(GET_REVIEW_BY_ID_QUERY, new ReviewRowMapper(), reviewId);
-
-        if (review == null) {
-            return Optional.empty();
-        }
-        return Optional.of(review);
+        return Optional.of(findReview(reviewId));
     }
 
     @Override
     public Integer getUserIdByReviewId(Integer reviewId) {
-        checkEntityExist(reviewId, TypeEntity.REVIEW);
-        Review review = jdbcTemplate.queryForObject(GET_REVIEW_BY_ID_QUERY, new ReviewRowMapper(), reviewId);
-
-        int userId = review.getUserId();
-        return userId;
+        return findReview(reviewId).getUserId();
     }
 
     /**
-     * Получения списка отзывов из БД
+     * Получение отзывов по списку id с сохранением порядка; удаленные отзывы пропускаются
      *
-     * @param filmId идентификатор фильма, по которому необходимо получить отзывы
-     * @param count  количество выводимых отзывов (Необязателен, в таком случае default = 10)
+     * @param ids идентификаторы отзывов
      */
     @Override
-    public List<Review> getReviewsById(Integer filmId, Integer count) {
-        log.info("Get reviews by id: {}", filmId);
-        return jdbcTemplate.query(GET_REVIEWS_BY_FILM_ID_QUERY, new ReviewRowMapper(), filmId, count);
-    }
+    public List<Review> getByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
 
-    /**
-     * Получение списка всех отзывов БД
-     *
-     * @param count количество выводимых отзывов
-     */
-    @Override
-    public List<Review> getAll(Integer count) {
-        log.info("Get reviews all: {}", count);
-        return jdbcTemplate.query(GET_ALL_REVIEWS_QUERY, new ReviewRowMapper(), count);
+        Map<Integer, Review> reviewsById = new HashMap<>();
+        jdbcTemplate.query(String.format(GET_REVIEWS_BY_IDS_QUERY, placeholders(ids.size())), new ReviewRowMapper(),
+                        ids.toArray())
+                .forEach(review -> reviewsById.put(review.getReviewId(), review));
+
+        return ids.stream()
+                .map(reviewsById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     /**
@@ -199,22 +205,60 @@ public class ReviewDbStorage extends BaseDbStorage implements ReviewStorage {
         return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, userId, filmId));
     }
 
+    // Последний id - из рейтинга в памяти, без SELECT MAX(review_id) –––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
     public Integer getLastReviewId() {
-        String sql = """
-                SELECT MAX(REVIEW_ID)
-                FROM reviews
-                """;
-        return jdbcTemplate.queryForObject(sql, Integer.class);
+        return reviewRankingIndex.getLastReviewId();
     }
 
     @Override
     public void updateUseful(Integer reviewId, int delta) {
-        jdbcTemplate.update(
-                "UPDATE reviews SET useful = useful + ? WHERE review_id = ?",
-                delta, reviewId
-        );
+        jdbcTemplate.update(INCREMENT_USEFUL_BY_QUERY, delta, reviewId);
+    }
+
+    /**
+     * Пакетное изменение полезности отзывов одним batch-запросом
+     *
+     * @param deltas id отзыва - изменение полезности
+     */
+    @Override
+    @Transactional
+    public void updateUseful(Map<Integer, Integer> deltas) {
+        jdbcTemplate.batchUpdate(INCREMENT_USEFUL_BY_QUERY, deltas.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList());
     }
 
+    /**
+     * Отзыв из кэша или из БД. Полезность меняется каждой оценкой, поэтому берется из рейтинга в памяти,
+     * а не из кэшированной строки.
+     *
+     * @throws NotFoundException если отзыв не найден
+     */
+    private Review findReview(Integer reviewId) {
+        Review cached = reviewCache.get(reviewId);
+        if (cached == null) {
+            long loadedVersion = version.get();
+            List<Review> rows = jdbcTemplate.query(GET_REVIEW_BY_ID_QUERY, new ReviewRowMapper(), reviewId);
+            if (rows.isEmpty()) {
+                throw notFound(reviewId);
+            }
+            cached = rows.getFirst();
+            synchronized (reviewCache) {
+                if (version.get() == loadedVersion) {
+                    reviewCache.put(reviewId, cached);
+                }
+            }
+        }
+        Integer useful = reviewId == null ? null : reviewRankingIndex.getUseful(reviewId);
+        return cached.toBuilder()
+                .useful(useful != null ? useful : cached.getUseful())
+                .build();
+    }
 
-}
\ No newline at end of file
+    private NotFoundException notFound(Integer reviewId) {
+        String errorMessage = String.format("Объект %s с id %s не найден ", TypeEntity.REVIEW, reviewId);
+        log.warn(errorMessage);
+        return new NotFoundException(errorMessage);
+    }
+}
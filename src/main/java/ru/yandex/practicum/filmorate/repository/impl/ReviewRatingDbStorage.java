@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.repository.impl;
 
+import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
 import ru.yandex.practicum.filmorate.repository.ReviewRatingStorage;
 
 import java.util.Optional;
@@ -10,14 +12,23 @@ import java.util.Optional;
 @Repository
 @Slf4j
 public class ReviewRatingDbStorage extends BaseDbStorage implements ReviewRatingStorage {
-    private static final String ADD_RATING_QUERY = """
-            INSERT INTO review_ratings (review_id, user_id, is_like)
-            VALUES (?, ?, ?);
+    // Блокировка строки отзыва: оценки одного отзыва применяются по очереди
+    private static final String LOCK_REVIEW_QUERY = """
+            SELECT review_id FROM reviews
+            WHERE review_id = ?
+            FOR UPDATE;
             """;
-    private static final String UPDATE_RATING_QUERY = """
-            UPDATE review_ratings
-            SET is_like = ?
-            WHERE review_id = ? AND user_id = ?;
+    // Проверка отзыва без блокировки строки
+    private static final String CHECK_REVIEW_QUERY = """
+            SELECT review_id FROM reviews
+            WHERE review_id = ?;
+            """;
+    private static final String MERGE_RATING_QUERY = """
+            MERGE INTO review_ratings rr
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BOOLEAN))) AS r(review_id, user_id, is_like)
+            ON rr.review_id = r.review_id AND rr.user_id = r.user_id
+            WHEN MATCHED THEN UPDATE SET is_like = r.is_like
+            WHEN NOT MATCHED THEN INSERT (review_id, user_id, is_like) VALUES (r.review_id, r.user_id, r.is_like);
             """;
     private static final String DELETE_RATING_QUERY = """
             DELETE FROM review_ratings
@@ -27,47 +38,78 @@ public class ReviewRatingDbStorage extends BaseDbStorage implements ReviewRating
             SELECT IS_LIKE FROM review_ratings
             WHERE review_id = ? AND user_id = ?;
             """;
+    private static final String UPDATE_USEFUL_QUERY = """
+            UPDATE reviews SET useful = useful + ? WHERE review_id = ?;
+            """;
 
     public ReviewRatingDbStorage(JdbcTemplate jdbcTemplate) {
         super(jdbcTemplate);
     }
 
     /**
-     * Добавление рейтинга отзыва
+     * Оценка отзыва пользователем в одной транзакции: строка отзыва блокируется, оценка пользователя
+     * вставляется, заменяется или удаляется, и полезность отзыва меняется на разницу старой и новой оценки.
+     * Повторная такая же оценка и снятие отсутствующей оценки ничего не меняют.
+     * Существование пользователя проверяется вызывающим кодом.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
-     * @param isLike   тип отзыва (положительный - true / отрицательный - false)
+     * @param isLike   true - лайк / false - дизлайк / null - снять оценку
+     * @return изменение полезности отзыва
+     * @throws NotFoundException если отзыв не найден
      */
     @Override
-    public void addRating(Integer reviewId, Integer userId, boolean isLike) {
-        jdbcTemplate.update(ADD_RATING_QUERY, reviewId, userId, isLike);
-        log.info("Rating added: review {}, user {}, isLike {}", reviewId, userId, isLike);
-    }
+    @Transactional
+    public int vote(Integer reviewId, Integer userId, Boolean isLike) {
+        if (jdbcTemplate.queryForList(LOCK_REVIEW_QUERY, Long.class, reviewId).isEmpty()) {
+            throw new NotFoundException(String.format("Отзыв с id %d не найден", reviewId));
+        }
+        Optional<Boolean> existing = getRating(reviewId, userId);
+        int delta = weight(isLike) - weight(existing.orElse(null));
+        if (delta == 0) {
+            return 0;
+        }
 
-    /**
-     * Обновление рейтинга отзыва
-     *
-     * @param reviewId идентификатор отзыва
-     * @param userId   идентификатор пользователя
-     * @param isLike   тип отзыва (положительный - true / отрицательный - false)
-     */
-    @Override
-    public void updateRating(Integer reviewId, Integer userId, boolean isLike) {
-        jdbcTemplate.update(UPDATE_RATING_QUERY, reviewId, userId, isLike);
-        log.info("Rating updated: review {}, user {}, isLike {}", reviewId, userId, isLike);
+        if (isLike == null) {
+            jdbcTemplate.update(DELETE_RATING_QUERY, reviewId, userId);
+        } else {
+            jdbcTemplate.update(MERGE_RATING_QUERY, reviewId, userId, isLike);
+        }
+        jdbcTemplate.update(UPDATE_USEFUL_QUERY, delta, reviewId);
+        log.info("Rating applied: review {}, user {}, isLike {}, delta {}", reviewId, userId, isLike, delta);
+        return delta;
     }
 
     /**
-     * Удаление рейтинга отзыва
+     * Замена оценки пользователя без изменения полезности отзыва и без блокировки его строки:
+     * изменение полезности копит и записывает {@code ReviewUsefulCounter}. Оценки одного пользователя
+     * одному отзыву вызывающий код выполняет по очереди. Существование отзыва проверяется в той же
+     * транзакции: оценка отзыва, удаленного после проверки в памяти, не записывается.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
+     * @param isLike   true - лайк / false - дизлайк / null - снять оценку
+     * @return изменение полезности отзыва
+     * @throws NotFoundException если отзыв не найден
      */
     @Override
-    public void deleteRating(Integer reviewId, Integer userId) {
-        jdbcTemplate.update(DELETE_RATING_QUERY, reviewId, userId);
-        log.info("Rating deleted: review {}, user {}", reviewId, userId);
+    @Transactional
+    public int replaceRating(Integer reviewId, Integer userId, Boolean isLike) {
+        if (jdbcTemplate.queryForList(CHECK_REVIEW_QUERY, Long.class, reviewId).isEmpty()) {
+            throw new NotFoundException(String.format("Отзыв с id %d не найден", reviewId));
+        }
+        Optional<Boolean> existing = getRating(reviewId, userId);
+        int delta = weight(isLike) - weight(existing.orElse(null));
+        if (delta == 0) {
+            return 0;
+        }
+
+        if (isLike == null) {
+            jdbcTemplate.update(DELETE_RATING_QUERY, reviewId, userId);
+        } else {
+            jdbcTemplate.update(MERGE_RATING_QUERY, reviewId, userId, isLike);
+        }
+        return delta;
     }
 
     /**
@@ -83,4 +125,12 @@ public class ReviewRatingDbStorage extends BaseDbStorage implements ReviewRating
                 reviewId, userId
         );
     }
+
+    // Вклад оценки в полезность: лайк = +1, дизлайк = -1, нет оценки = 0 ––––––––––––––––––––––––––––––––––––––––––––
+    private static int weight(Boolean isLike) {
+        if (isLike == null) {
+            return 0;
+        }
+        return isLike ? 1 : -1;
+    }
 }
@@ -2,7 +2,9 @@ package ru.yandex.practicum.filmorate.repository.impl;
 
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -14,16 +16,25 @@ import ru.yandex.practicum.filmorate.mapper.toEntity.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.repository.TypeEntity;
 import ru.yandex.practicum.filmorate.repository.UserStorage;
+import ru.yandex.practicum.filmorate.repository.memory.EntityIdRegistry;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
 import ru.yandex.practicum.filmorate.rowMappers.UserRowMapper;
 
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 public class UserDbStorage extends BaseDbStorage implements UserStorage {
+    private static final int USERS_BATCH_SIZE = 500;
+
     private final UserRowMapper userRowMapper = new UserRowMapper();
 
     // SQL Запросы –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
@@ -35,6 +46,18 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
             SELECT *
             FROM users;
             """;
+    private static final String GET_USERS_PAGE_QUERY = """
+            SELECT *
+            FROM users
+            WHERE id > ?
+            ORDER BY id
+            LIMIT ?;
+            """;
+    private static final String STREAM_ALL_USERS_QUERY = """
+            SELECT *
+            FROM users
+            ORDER BY id;
+            """;
     private static final String GET_USER_BY_ID_QUERY = """
             SELECT *
             FROM users
@@ -49,30 +72,41 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
     private static final String DELETE_USER_BY_ID_QUERY = """
             DELETE FROM USER_FRIENDS WHERE USER_ID = ? AND FRIEND_ID = ?;
             """;
-    private static final String USER_FRIENDS_FIND_REQUEST = """
-            SELECT COUNT(*)
-            FROM user_friends
-            WHERE user_id = ? AND friend_id = ?;
+    private static final String FIND_USERS_BY_IDS = """
+            SELECT *
+            FROM users
+            WHERE id IN (%s)
+            ORDER BY id;
             """;
-    private static final String FIND_USER_FRIENDS_ID_LIST_BY_USER_ID = """
-            SELECT friend_id
-            FROM user_friends
+
+    private static final String FIND_LIKED_FILMS_ID_BY_USER_ID = """
+            SELECT film_id
+            FROM film_likes
             WHERE user_id = ?;
             """;
-    private static final String GET_USER_COMMON_FRIENDS = """
-            SELECT u.* FROM users u
-            JOIN user_friends uf1 ON u.id = uf1.friend_id
-            JOIN user_friends uf2 ON u.id = uf2.friend_id
-            WHERE uf1.user_id = ? AND uf2.user_id = ?;
-            """;
-    private static final String FIND_USER_FRIENDS_LIST_BY_USER_ID = """
-            SELECT u.* FROM users u
-            JOIN user_friends uf ON u.id = uf.friend_id
-            WHERE uf.user_id = ?;
+    private static final String DECREMENT_LIKES_COUNT_BY_USER_ID = """
+            UPDATE films SET likes_count = likes_count - 1
+            WHERE id IN (SELECT film_id FROM film_likes WHERE user_id = ?);
             """;
 
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmSuggestTrie filmSuggestTrie;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final EntityIdRegistry entityIdRegistry;
+    private final FriendshipGraph friendshipGraph;
+    private final int streamChunkSize;
+
+    public UserDbStorage(JdbcTemplate jdbcTemplate, FilmPopularityIndex filmPopularityIndex,
+                         FilmSuggestTrie filmSuggestTrie, FilmLikeMatrix filmLikeMatrix, EntityIdRegistry entityIdRegistry,
+                         FriendshipGraph friendshipGraph,
+                         @Value("${filmorate.streaming.chunk-size:500}") int streamChunkSize) {
         super(jdbcTemplate);
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.filmSuggestTrie = filmSuggestTrie;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.entityIdRegistry = entityIdRegistry;
+        this.friendshipGraph = friendshipGraph;
+        this.streamChunkSize = streamChunkSize;
     }
 
     // Вывод всех пользователей ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
@@ -80,11 +114,48 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
     public List<User> getAll() {
         List<UserDto> users = jdbcTemplate.query(GET_ALL_USER_QUERY, userRowMapper);
 
-        users.forEach(this::addFriendsToUserResponse);
+        addFriendsToUsers(users);
+
+        return users.stream().map(UserMapper::mapToUser).toList();
+    }
+
+    /**
+     * Страница пользователей по возрастанию id, начиная после {@code afterId}.
+     *
+     * @param afterId id последнего пользователя предыдущей страницы или {@code null} для первой страницы
+     * @param limit   размер страницы
+     */
+    @Override
+    public List<User> getPage(Integer afterId, int limit) {
+        List<UserDto> users = jdbcTemplate.query(GET_USERS_PAGE_QUERY, userRowMapper, afterId == null ? 0 : afterId, limit);
+
+        addFriendsToUsers(users);
 
         return users.stream().map(UserMapper::mapToUser).toList();
     }
 
+    /**
+     * Последовательная выдача всех пользователей по возрастанию id курсором,
+     * друзья загружаются пачками по {@code filmorate.streaming.chunk-size} пользователей.
+     *
+     * @param consumer  получатель пользователей
+     */
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        List<UserDto> chunk = new ArrayList<>(streamChunkSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(STREAM_ALL_USERS_QUERY);
+            ps.setFetchSize(streamChunkSize);
+            return ps;
+        }, rs -> {
+            chunk.add(userRowMapper.mapRow(rs, rs.getRow()));
+            if (chunk.size() >= streamChunkSize) {
+                emitChunk(chunk, consumer);
+            }
+        });
+        emitChunk(chunk, consumer);
+    }
+
     // Вывод пользователя по Id ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
     public Optional<User> getUserById(Integer id) {
@@ -92,7 +163,7 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
 
         try {
             UserDto userDto = jdbcTemplate.queryForObject(GET_USER_BY_ID_QUERY, userRowMapper, id);
-            loadFriends(id);
+            addFriendsToUserResponse(userDto);
             return Optional.of(UserMapper.mapToUser(userDto));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
@@ -119,10 +190,50 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
             return ps;
         }, keyHolder);
 
-        user.setId(keyHolder.getKey().intValue());
+        int userId = keyHolder.getKey().intValue();
+        user.setId(userId);
+        afterCommit(() -> entityIdRegistry.add(TypeEntity.USER, userId));
         return user;
     }
 
+    /**
+     * Добавление пачки пользователей одним пакетом с получением сгенерированных id.
+     * Пользователи должны быть проверены заранее через {@link #validateRequestUser(User)}.
+     *
+     * @param users новые пользователи; после сохранения им присваиваются id
+     */
+    @Transactional
+    public List<User> addUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(ADD_USER_QUERY, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setDate(4, java.sql.Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
+        afterCommit(() -> users.forEach(user -> entityIdRegistry.add(TypeEntity.USER, user.getId())));
+        log.info("Users created: {}", users.size());
+        return users;
+    }
+
     // Обновление пользователя –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
     public Optional<User> updateUser(User requestUser) {
@@ -150,16 +261,17 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
         checkUserId(firstId);
         checkUserId(secondId);
 
-        int count = jdbcTemplate.queryForObject(USER_FRIENDS_FIND_REQUEST, Integer.class, firstId, secondId);
-
         // Проверка существования дружбы
-        if (count > 0) {
+        if (friendshipGraph.isFriend(firstId, secondId)) {
             log.warn("Между пользователями уже существует дружба: {}, {}", firstId, secondId);
             return Optional.of(false);
         }
 
         // Добавление дружбы
         int rowsCount = jdbcTemplate.update(ADD_FRIEND_QUERY, firstId, secondId);
+        if (rowsCount > 0) {
+            afterCommit(() -> friendshipGraph.addFriend(firstId, secondId));
+        }
         return Optional.of(rowsCount > 0);
     }
 
@@ -170,16 +282,14 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
         checkUserId(secondId);
 
         int rows = jdbcTemplate.update(DELETE_USER_BY_ID_QUERY, firstId, secondId);
+        afterCommit(() -> friendshipGraph.removeFriend(firstId, secondId));
         return Optional.of(rows > 0);
     }
 
     // Список общих друзей –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     @Override
     public Optional<List<User>> getCommonFriends(Integer firstUser, Integer secondUser) {
-
-        List<UserDto> commonFriends = jdbcTemplate.query(GET_USER_COMMON_FRIENDS, userRowMapper, firstUser, secondUser);
-
-        commonFriends.forEach(this::addFriendsToUserResponse);
+        List<UserDto> commonFriends = findUsersByIds(friendshipGraph.commonFriends(firstUser, secondUser));
 
         return Optional.of(commonFriends
                 .stream()
@@ -191,9 +301,7 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
     public Optional<List<User>> getUserFriends(Integer userId) {
         checkUserId(userId);
 
-        List<UserDto> friends = jdbcTemplate.query(FIND_USER_FRIENDS_LIST_BY_USER_ID, userRowMapper, userId);
-
-        friends.forEach(this::addFriendsToUserResponse);
+        List<UserDto> friends = findUsersByIds(friendshipGraph.friendsOf(userId));
 
         return Optional.of(friends
                 .stream()
@@ -201,6 +309,14 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
                 .toList());
     }
 
+    /**
+     * Пользователи с друзьями по набору id в порядке возрастания id; отсутствующие id пропускаются.
+     */
+    @Override
+    public List<User> getUsersByIds(int[] ids) {
+        return findUsersByIds(ids).stream().map(UserMapper::mapToUser).toList();
+    }
+
     /**
      * Удаляет пользователя по идентификатору.
      *
@@ -215,29 +331,38 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
             throw new NotFoundException("Пользователь с id=" + id + " не найден");
         }
 
-        // Удаляем связанные данные (лайки и дружеские связи)
+        // Удаляем связанные данные (лайки и дружеские связи), уменьшая счетчики лайков фильмов
+        List<Integer> likedFilms = jdbcTemplate.queryForList(FIND_LIKED_FILMS_ID_BY_USER_ID, Integer.class, id);
+        jdbcTemplate.update(DECREMENT_LIKES_COUNT_BY_USER_ID, id);
         jdbcTemplate.update("DELETE FROM film_likes WHERE user_id = ?", id);
         jdbcTemplate.update("DELETE FROM user_friends WHERE user_id = ? OR friend_id = ?", id, id);
 
         // Удаляем пользователя
         jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+        afterCommit(() -> {
+            likedFilms.forEach(filmId -> {
+                filmPopularityIndex.adjust(filmId, -1);
+                filmSuggestTrie.likesChanged(filmId);
+            });
+            entityIdRegistry.remove(TypeEntity.USER, id);
+            filmLikeMatrix.removeUser(id);
+            friendshipGraph.removeUser(id);
+        });
     }
 
     /**
      * Проверяет существование пользователя в базе данных по указанному идентификатору.
      * <p>
-     * Использует эффективный запрос с EXISTS для минимальной нагрузки на базу данных.
-     * Особенно полезно для проверок перед выполнением операций удаления или модификации.
+     * Проверка выполняется по реестру id в памяти ({@link EntityIdRegistry}) без запроса к базе,
+     * поэтому подходит для частых путей записи: лайков, событий ленты.
      * </p>
      *
-     * @param id идентификатор пользователя для проверки (должен быть не null)
-     * @return true - если пользователь с указанным ID существует, false - если не существует
-     * @throws IllegalArgumentException если переданный id равен null
+     * @param id идентификатор пользователя для проверки
+     * @return true - если пользователь с указанным ID существует, false - если не существует или id равен null
      */
     @Override
     public boolean existsById(Integer id) {
-        String sql = "SELECT EXISTS(SELECT 1 FROM users WHERE id = ?)";
-        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+        return entityIdRegistry.contains(TypeEntity.USER, id);
     }
     // ВСПОМОГАТЕЛЬНЫЙ МЕТОДЫ
 
@@ -247,7 +372,12 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
     }
 
     // Валидация –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
-    private void validateRequestUser(User user) {
+    /**
+     * Проверка почты, логина и даты рождения пользователя.
+     *
+     * @throws ValidationException если поле заполнено неверно
+     */
+    public void validateRequestUser(User user) {
         if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
             throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
         }
@@ -259,9 +389,14 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
         }
     }
 
-    // Поиск id друзей пользователя ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    // Поиск id друзей пользователя в графе дружбы ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
     private Set<Integer> loadFriends(Integer userId) {
-        return new HashSet<>(jdbcTemplate.queryForList(FIND_USER_FRIENDS_ID_LIST_BY_USER_ID, Integer.class, userId));
+        int[] friends = friendshipGraph.friendsOf(userId);
+        Set<Integer> result = new HashSet<>(friends.length * 2);
+        for (int friendId : friends) {
+            result.add(friendId);
+        }
+        return result;
     }
 
     // Преобразование со списком друзей ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
@@ -271,4 +406,25 @@ public class UserDbStorage extends BaseDbStorage implements UserStorage {
         userDto.setFriendsId(loadFriends(userId));
     }
 
+    private void addFriendsToUsers(List<UserDto> users) {
+        users.forEach(this::addFriendsToUserResponse);
+    }
+
+    // Пользователи по id запросами IN (...) по USERS_BATCH_SIZE id, с друзьями из графа
+    private List<UserDto> findUsersByIds(int[] ids) {
+        List<UserDto> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += USERS_BATCH_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(from + USERS_BATCH_SIZE, ids.length)).boxed().toArray();
+            users.addAll(jdbcTemplate.query(String.format(FIND_USERS_BY_IDS, placeholders(chunk.length)), userRowMapper, chunk));
+        }
+        addFriendsToUsers(users);
+        return users;
+    }
+
+    private void emitChunk(List<UserDto> chunk, Consumer<User> consumer) {
+        addFriendsToUsers(chunk);
+        chunk.forEach(userDto -> consumer.accept(UserMapper.mapToUser(userDto)));
+        chunk.clear();
+    }
+
 }
\ No newline at end of file
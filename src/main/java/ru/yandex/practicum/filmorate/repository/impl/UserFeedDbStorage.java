@@ -1,12 +1,20 @@
 package ru.yandex.practicum.filmorate.repository.impl;
 
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.UserFeedEvent;
 import ru.yandex.practicum.filmorate.repository.UserFeedStorage;
+import ru.yandex.practicum.filmorate.rowMappers.UserFeedEventRowMapper;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
@@ -23,27 +31,114 @@ public class UserFeedDbStorage implements UserFeedStorage {
             SELECT *
             FROM user_feed
             WHERE user_id = ?
-            ORDER BY timestamp;
+            ORDER BY user_id, timestamp, event_id;
+            """;
+
+    // Страница ленты: события после курсора (since, afterId) и до until. Сортировка начинается с user_id,
+    // чтобы H2 читал индекс (user_id, timestamp, event_id) по порядку и останавливался на LIMIT без сортировки
+    private static final String GET_FEED_PAGE_QUERY = """
+            SELECT *
+            FROM user_feed
+            WHERE user_id = ?
+              AND timestamp >= ?
+              AND timestamp < ?
+              AND (timestamp > ? OR event_id > ?)
+            ORDER BY user_id, timestamp, event_id
+            LIMIT ?;
+            """;
+
+    private static final String GET_ARCHIVE_BOUNDARY_QUERY = """
+            SELECT MAX(event_id)
+            FROM (SELECT event_id
+                  FROM user_feed
+                  WHERE timestamp < ?
+                  ORDER BY event_id
+                  LIMIT ?);
+            """;
+
+    private static final String COPY_TO_ARCHIVE_QUERY = """
+            INSERT INTO user_feed_archive (event_id, timestamp, user_id, event_type, operation, entity_id)
+            SELECT event_id, timestamp, user_id, event_type, operation, entity_id
+            FROM user_feed
+            WHERE timestamp < ? AND event_id <= ?;
+            """;
+
+    private static final String DELETE_ARCHIVED_QUERY = """
+            DELETE FROM user_feed
+            WHERE timestamp < ? AND event_id <= ?;
             """;
 
     @Override
     public void addEvent(UserFeedEvent event) {
-        jdbcTemplate.update(ADD_EVENT_QUERY, event.getTimestamp(), event.getUserId(), event.getEventType(), event.getOperation(), event.getEntityId());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(ADD_EVENT_QUERY, new String[]{"event_id"});
+            setEventValues(ps, event);
+            return ps;
+        }, keyHolder);
+        event.setEventId(keyHolder.getKeyAs(Long.class));
+    }
+
+    /**
+     * Запись пачки событий одним batch-запросом. Пачка записывается целиком или не записывается совсем,
+     * событиям присваиваются полученные id.
+     */
+    @Override
+    @Transactional
+    public void addEvents(List<UserFeedEvent> events) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(ADD_EVENT_QUERY, new String[]{"event_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setEventValues(ps, events.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return events.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setEventId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
     }
 
     @Override
     public List<UserFeedEvent> getFeedByUserId(int userId) {
-        return jdbcTemplate.query(
-                GET_FEED_BY_USER_ID_QUERY,
-                (rs, rowNum) -> UserFeedEvent.builder()
-                        .eventId(rs.getLong("event_id"))
-                        .timestamp(rs.getLong("timestamp"))
-                        .userId(rs.getInt("user_id"))
-                        .eventType(rs.getString("event_type"))
-                        .operation(rs.getString("operation"))
-                        .entityId(rs.getInt("entity_id"))
-                        .build(),
-                userId
-        );
+        return jdbcTemplate.query(GET_FEED_BY_USER_ID_QUERY, new UserFeedEventRowMapper(), userId);
+    }
+
+    @Override
+    public List<UserFeedEvent> getFeedPage(int userId, long since, long until, long afterId, int limit) {
+        return jdbcTemplate.query(GET_FEED_PAGE_QUERY, new UserFeedEventRowMapper(),
+                userId, since, until, since, afterId, limit);
+    }
+
+    /**
+     * Перенос в {@code user_feed_archive} не более {@code batchSize} самых ранних событий старше {@code before}.
+     * Копирование и удаление выполняются в одной транзакции.
+     *
+     * @return количество перенесенных событий
+     */
+    @Override
+    @Transactional
+    public int archiveBefore(long before, int batchSize) {
+        Long boundary = jdbcTemplate.queryForObject(GET_ARCHIVE_BOUNDARY_QUERY, Long.class, before, batchSize);
+        if (boundary == null) {
+            return 0;
+        }
+        jdbcTemplate.update(COPY_TO_ARCHIVE_QUERY, before, boundary);
+        return jdbcTemplate.update(DELETE_ARCHIVED_QUERY, before, boundary);
+    }
+
+    private static void setEventValues(PreparedStatement ps, UserFeedEvent event) throws SQLException {
+        ps.setLong(1, event.getTimestamp());
+        ps.setInt(2, event.getUserId());
+        ps.setString(3, event.getEventType());
+        ps.setString(4, event.getOperation());
+        ps.setInt(5, event.getEntityId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.repository.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.UserFeedEvent;
+import ru.yandex.practicum.filmorate.repository.UserTimelineStorage;
+import ru.yandex.practicum.filmorate.rowMappers.UserFeedEventRowMapper;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class UserTimelineDbStorage implements UserTimelineStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String ADD_ENTRY_QUERY = """
+            INSERT INTO user_timeline (user_id, event_id)
+            VALUES (?, ?);
+            """;
+
+    // Удаление строк ленты старше ее последних capacity событий; пока событий меньше, подзапрос пуст
+    private static final String TRIM_TIMELINE_QUERY = """
+            DELETE FROM user_timeline
+            WHERE user_id = ?
+              AND event_id < (SELECT event_id
+                              FROM user_timeline
+                              WHERE user_id = ?
+                              ORDER BY user_id DESC, event_id DESC
+                              LIMIT 1 OFFSET ?);
+            """;
+
+    private static final String GET_TIMELINE_QUERY = """
+            SELECT f.*
+            FROM user_timeline t
+            JOIN user_feed f ON f.event_id = t.event_id
+            WHERE t.user_id = ?
+            ORDER BY t.user_id DESC, t.event_id DESC
+            LIMIT ?;
+            """;
+
+    // Сортировка с user_id, чтобы H2 читал индекс (user_id, event_id) в обратном порядке без сортировки
+    private static final String GET_RECENT_EVENTS_QUERY = """
+            SELECT *
+            FROM user_feed
+            WHERE user_id = ? AND event_id < ?
+            ORDER BY user_id DESC, event_id DESC
+            LIMIT ?;
+            """;
+
+    @Override
+    public void addEntries(List<Entry> entries) {
+        jdbcTemplate.batchUpdate(ADD_ENTRY_QUERY, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.userId());
+            ps.setLong(2, entry.eventId());
+        });
+    }
+
+    /**
+     * Удаление из лент событий старше последних {@code capacity} событий каждой ленты.
+     * Пользователи обрабатываются по возрастанию id, чтобы параллельные удаления брали блокировки в одном порядке.
+     *
+     * @param userIds  владельцы лент, в которые добавлены события
+     * @param capacity максимальное количество событий в ленте
+     */
+    @Override
+    public void trimToCapacity(Collection<Integer> userIds, int capacity) {
+        List<Integer> sorted = userIds.stream().sorted().toList();
+        jdbcTemplate.batchUpdate(TRIM_TIMELINE_QUERY, sorted, sorted.size(), (ps, userId) -> {
+            ps.setInt(1, userId);
+            ps.setInt(2, userId);
+            ps.setInt(3, capacity - 1);
+        });
+    }
+
+    @Override
+    public List<UserFeedEvent> getTimeline(int userId, int limit) {
+        return jdbcTemplate.query(GET_TIMELINE_QUERY, new UserFeedEventRowMapper(), userId, limit);
+    }
+
+    @Override
+    public List<UserFeedEvent> getRecentEvents(int authorId, long beforeEventId, int limit) {
+        return jdbcTemplate.query(GET_RECENT_EVENTS_QUERY, new UserFeedEventRowMapper(), authorId, beforeEventId, limit);
+    }
+}
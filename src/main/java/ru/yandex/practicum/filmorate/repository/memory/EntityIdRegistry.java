@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.TypeEntity;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Идентификаторы существующих фильмов и пользователей в памяти.
+ * <p>
+ * Заменяет запрос к базе при проверке существования на частых путях записи (лайки, события ленты).
+ * Id выдаются базой последовательно, поэтому каждое множество хранится битовой картой:
+ * миллион id занимает около 125 КБ. Обновляется хранилищами при создании и удалении.
+ * </p>
+ */
+@Slf4j
+@Component
+public class EntityIdRegistry {
+    private static final String GET_FILM_IDS_QUERY = """
+            SELECT id
+            FROM films;
+            """;
+    private static final String GET_USER_IDS_QUERY = """
+            SELECT id
+            FROM users;
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BitSet films = new BitSet();
+    private final BitSet users = new BitSet();
+
+    public EntityIdRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Загрузка id при запуске ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public void reload() {
+        BitSet loadedFilms = new BitSet();
+        BitSet loadedUsers = new BitSet();
+        jdbcTemplate.query(GET_FILM_IDS_QUERY, rs -> {
+            loadedFilms.set(rs.getInt("id"));
+        });
+        jdbcTemplate.query(GET_USER_IDS_QUERY, rs -> {
+            loadedUsers.set(rs.getInt("id"));
+        });
+
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            films.or(loadedFilms);
+            users.clear();
+            users.or(loadedUsers);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Реестр id загружен, фильмов: {}, пользователей: {}", loadedFilms.cardinality(), loadedUsers.cardinality());
+    }
+
+    /**
+     * Существует ли фильм или пользователь с данным id.
+     *
+     * @throws IllegalArgumentException для других типов сущностей
+     */
+    public boolean contains(TypeEntity type, Integer id) {
+        if (id == null || id < 0) {
+            return false;
+        }
+        BitSet ids = idsOf(type);
+        lock.readLock().lock();
+        try {
+            return ids.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Регистрация созданной сущности –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void add(TypeEntity type, int id) {
+        BitSet ids = idsOf(type);
+        lock.writeLock().lock();
+        try {
+            ids.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление сущности ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void remove(TypeEntity type, int id) {
+        BitSet ids = idsOf(type);
+        lock.writeLock().lock();
+        try {
+            ids.clear(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private BitSet idsOf(TypeEntity type) {
+        return switch (type) {
+            case FILM -> films;
+            case USER -> users;
+            default -> throw new IllegalArgumentException("Реестр не хранит id сущностей типа " + type);
+        };
+    }
+}
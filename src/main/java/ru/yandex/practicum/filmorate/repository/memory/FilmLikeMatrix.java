@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разреженная матрица лайков "пользователь × фильм" в памяти.
+ * <p>
+ * Строки и столбцы хранятся отсортированными массивами {@code int[]}: фильмы каждого пользователя
+ * и пользователи, лайкнувшие каждый фильм. Массивы не изменяются после публикации - при записи
+ * создается новая копия, поэтому чтение не требует блокировок.
+ * </p>
+ */
+@Slf4j
+@Component
+public class FilmLikeMatrix {
+    private static final int[] EMPTY = new int[0];
+    private static final String GET_ALL_LIKES_QUERY = """
+            SELECT user_id,
+                   film_id
+            FROM film_likes;
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> usersByFilm = new ConcurrentHashMap<>();
+
+    public FilmLikeMatrix(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Загрузка матрицы при запуске ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, IntList> byUser = new HashMap<>();
+        Map<Integer, IntList> byFilm = new HashMap<>();
+        jdbcTemplate.query(GET_ALL_LIKES_QUERY, rs -> {
+            int userId = rs.getInt("user_id");
+            int filmId = rs.getInt("film_id");
+            byUser.computeIfAbsent(userId, k -> new IntList()).add(filmId);
+            byFilm.computeIfAbsent(filmId, k -> new IntList()).add(userId);
+        });
+
+        filmsByUser.clear();
+        usersByFilm.clear();
+        byUser.forEach((userId, films) -> filmsByUser.put(userId, films.toSortedArray()));
+        byFilm.forEach((filmId, users) -> usersByFilm.put(filmId, users.toSortedArray()));
+        log.info("Матрица лайков загружена, пользователей: {}, фильмов: {}", filmsByUser.size(), usersByFilm.size());
+    }
+
+    // Добавление лайка –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void like(int userId, int filmId) {
+        filmsByUser.compute(userId, (k, films) -> insert(films, filmId));
+        usersByFilm.compute(filmId, (k, users) -> insert(users, userId));
+    }
+
+    // Удаление лайка –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void unlike(int userId, int filmId) {
+        filmsByUser.computeIfPresent(userId, (k, films) -> delete(films, filmId));
+        usersByFilm.computeIfPresent(filmId, (k, users) -> delete(users, userId));
+    }
+
+    // Удаление фильма со всеми лайками ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void removeFilm(int filmId) {
+        int[] users = usersByFilm.remove(filmId);
+        if (users != null) {
+            for (int userId : users) {
+                filmsByUser.computeIfPresent(userId, (k, films) -> delete(films, filmId));
+            }
+        }
+    }
+
+    // Удаление пользователя со всеми лайками –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void removeUser(int userId) {
+        int[] films = filmsByUser.remove(userId);
+        if (films != null) {
+            for (int filmId : films) {
+                usersByFilm.computeIfPresent(filmId, (k, users) -> delete(users, userId));
+            }
+        }
+    }
+
+    /**
+     * Фильмы, лайкнутые пользователем.
+     *
+     * @return отсортированный массив id, который нельзя изменять
+     */
+    public int[] filmsOf(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Пользователи, лайкнувшие фильм.
+     *
+     * @return отсортированный массив id, который нельзя изменять
+     */
+    public int[] likersOf(int filmId) {
+        return usersByFilm.getOrDefault(filmId, EMPTY);
+    }
+
+    public boolean contains(int userId, int filmId) {
+        return Arrays.binarySearch(filmsOf(userId), filmId) >= 0;
+    }
+
+    // Вставка в отсортированный массив с копированием ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private static int[] insert(int[] values, int value) {
+        if (values == null) {
+            return new int[]{value};
+        }
+        int position = Arrays.binarySearch(values, value);
+        if (position >= 0) {
+            return values;
+        }
+        position = -position - 1;
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    // Удаление из отсортированного массива с копированием; пустой массив удаляет ключ ––––––––––––––––––––––––––––––––
+    private static int[] delete(int[] values, int value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position < 0) {
+            return values;
+        }
+        if (values.length == 1) {
+            return null;
+        }
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+        return result;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
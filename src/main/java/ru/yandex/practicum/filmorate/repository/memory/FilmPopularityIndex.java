@@ -0,0 +1,311 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг популярности фильмов в памяти.
+ * <p>
+ * Хранит количество лайков каждого фильма и упорядоченные множества пар (лайки, id) по разделам:
+ * общий рейтинг, рейтинг по жанру, по году выпуска и по паре (жанр, год). Поэтому первые {@code count}
+ * фильмов любого раздела выдаются за O(count) без обращения к базе данных.
+ * Источник истины - столбец {@code films.likes_count}, который обновляется вместе с {@code film_likes}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+    private static final String GET_LIKES_COUNT_QUERY = """
+            SELECT f.id,
+                   f.likes_count,
+                   COALESCE(fl.actual_count, 0) AS actual_count
+            FROM films f
+            LEFT JOIN (
+                SELECT film_id, COUNT(*) AS actual_count
+                FROM film_likes
+                GROUP BY film_id
+            ) fl ON f.id = fl.film_id;
+            """;
+    private static final String REPAIR_LIKES_COUNT_QUERY = """
+            UPDATE films SET likes_count = ? WHERE id = ?;
+            """;
+    private static final String GET_FILMS_FOR_INDEX_QUERY = """
+            SELECT id,
+                   release_date,
+                   likes_count
+            FROM films;
+            """;
+    private static final String GET_FILM_GENRES_FOR_INDEX_QUERY = """
+            SELECT film_id,
+                   genre_id
+            FROM film_genres;
+            """;
+
+    // Порядок выдачи: по убыванию лайков, при равенстве - по убыванию id
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparing(Comparator.comparingInt(Entry::filmId).reversed());
+    private static final Partition ALL = new Partition(null, null);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, IndexedFilm> films = new HashMap<>();
+    private final Map<Partition, NavigableSet<Entry>> rankings = new HashMap<>();
+
+    public FilmPopularityIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Перестроение рейтинга при запуске: счетчики сверяются с {@code film_likes},
+     * расхождения исправляются, после чего рейтинг заполняется заново.
+     */
+    @PostConstruct
+    public void rebuild() {
+        checkConsistency(true);
+        load();
+    }
+
+    /**
+     * Сверка счетчиков лайков с таблицей {@code film_likes}.
+     * Проверяются и столбец {@code films.likes_count}, и значения в памяти.
+     *
+     * @param repair исправлять ли найденные расхождения
+     * @return фактическое количество лайков по каждому фильму
+     */
+    public Map<Integer, Integer> checkConsistency(boolean repair) {
+        Map<Integer, Integer> actual = new HashMap<>();
+        List<Object[]> columnMismatches = new ArrayList<>();
+        int memoryMismatches = 0;
+
+        jdbcTemplate.query(GET_LIKES_COUNT_QUERY, rs -> {
+            int filmId = rs.getInt("id");
+            int actualCount = rs.getInt("actual_count");
+            actual.put(filmId, actualCount);
+            if (rs.getInt("likes_count") != actualCount) {
+                columnMismatches.add(new Object[]{actualCount, filmId});
+            }
+        });
+
+        lock.readLock().lock();
+        try {
+            if (!films.isEmpty()) {
+                for (Map.Entry<Integer, Integer> entry : actual.entrySet()) {
+                    IndexedFilm film = films.get(entry.getKey());
+                    if (film == null || film.likes() != entry.getValue()) {
+                        memoryMismatches++;
+                    }
+                }
+                memoryMismatches += (int) films.keySet().stream().filter(id -> !actual.containsKey(id)).count();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!columnMismatches.isEmpty()) {
+            log.warn("Расхождение films.likes_count с film_likes, фильмов: {}", columnMismatches.size());
+            if (repair) {
+                jdbcTemplate.batchUpdate(REPAIR_LIKES_COUNT_QUERY, columnMismatches);
+            }
+        }
+        if (memoryMismatches > 0) {
+            log.warn("Расхождение рейтинга в памяти с film_likes, фильмов: {}", memoryMismatches);
+            if (repair) {
+                load();
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Добавление фильма в рейтинг или замена его данных.
+     *
+     * @param filmId      идентификатор фильма
+     * @param releaseDate дата выхода, определяет раздел по году
+     * @param genreIds    жанры фильма, определяют разделы по жанрам
+     * @param likes       количество лайков
+     */
+    public void putFilm(int filmId, LocalDate releaseDate, Collection<Integer> genreIds, int likes) {
+        Integer year = releaseDate == null ? null : releaseDate.getYear();
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(filmId);
+            addUnlocked(new IndexedFilm(filmId, year, Set.copyOf(genreIds), likes));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Обновление жанров и года фильма с сохранением его лайков.
+     */
+    public void updateFilm(int filmId, LocalDate releaseDate, Collection<Integer> genreIds) {
+        putFilm(filmId, releaseDate, genreIds, getLikes(filmId));
+    }
+
+    // Изменение счетчика на delta ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void adjust(int filmId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            IndexedFilm film = removeUnlocked(filmId);
+            if (film != null) {
+                addUnlocked(film.withLikes(Math.max(0, film.likes() + delta)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление фильма из рейтинга ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Идентификаторы самых популярных фильмов.
+     *
+     * @param count количество фильмов
+     * @return id фильмов по убыванию количества лайков
+     */
+    public List<Integer> top(int count) {
+        return top(count, null, null);
+    }
+
+    /**
+     * Идентификаторы самых популярных фильмов раздела.
+     *
+     * @param count   количество фильмов
+     * @param genreId жанр или {@code null} для всех жанров
+     * @param year    год выпуска или {@code null} для всех лет
+     * @return id фильмов по убыванию количества лайков
+     */
+    public List<Integer> top(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> ranking = rankings.getOrDefault(new Partition(genreId, year), Collections.emptyNavigableSet());
+            List<Integer> result = new ArrayList<>(Math.min(Math.max(count, 0), ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (result.size() < count && iterator.hasNext()) {
+                result.add(iterator.next().filmId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikes(int filmId) {
+        lock.readLock().lock();
+        try {
+            IndexedFilm film = films.get(filmId);
+            return film == null ? 0 : film.likes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(int filmId) {
+        lock.readLock().lock();
+        try {
+            return films.containsKey(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Полная загрузка из базы –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    private void load() {
+        Map<Integer, Set<Integer>> genresByFilm = new HashMap<>();
+        jdbcTemplate.query(GET_FILM_GENRES_FOR_INDEX_QUERY, rs -> {
+            genresByFilm.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>()).add(rs.getInt("genre_id"));
+        });
+
+        List<IndexedFilm> loaded = new ArrayList<>();
+        jdbcTemplate.query(GET_FILMS_FOR_INDEX_QUERY, rs -> {
+            int filmId = rs.getInt("id");
+            java.sql.Date releaseDate = rs.getDate("release_date");
+            loaded.add(new IndexedFilm(
+                    filmId,
+                    releaseDate == null ? null : releaseDate.toLocalDate().getYear(),
+                    genresByFilm.getOrDefault(filmId, Set.of()),
+                    rs.getInt("likes_count")));
+        });
+
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            rankings.clear();
+            loaded.forEach(this::addUnlocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Рейтинг популярности перестроен, фильмов: {}, разделов: {}", loaded.size(), rankings.size());
+    }
+
+    private void addUnlocked(IndexedFilm film) {
+        films.put(film.filmId(), film);
+        Entry entry = new Entry(film.filmId(), film.likes());
+        for (Partition partition : film.partitions()) {
+            rankings.computeIfAbsent(partition, k -> new TreeSet<>(ORDER)).add(entry);
+        }
+    }
+
+    private IndexedFilm removeUnlocked(int filmId) {
+        IndexedFilm film = films.remove(filmId);
+        if (film != null) {
+            Entry entry = new Entry(filmId, film.likes());
+            for (Partition partition : film.partitions()) {
+                NavigableSet<Entry> ranking = rankings.get(partition);
+                if (ranking != null) {
+                    ranking.remove(entry);
+                    if (ranking.isEmpty() && !partition.equals(ALL)) {
+                        rankings.remove(partition);
+                    }
+                }
+            }
+        }
+        return film;
+    }
+
+    private record Entry(int filmId, int likes) {
+    }
+
+    // Раздел рейтинга: null в поле означает "любой"
+    private record Partition(Integer genreId, Integer year) {
+    }
+
+    private record IndexedFilm(int filmId, Integer year, Set<Integer> genreIds, int likes) {
+        IndexedFilm withLikes(int newLikes) {
+            return new IndexedFilm(filmId, year, genreIds, newLikes);
+        }
+
+        List<Partition> partitions() {
+            List<Partition> partitions = new ArrayList<>(2 + 2 * genreIds.size());
+            partitions.add(ALL);
+            if (year != null) {
+                partitions.add(new Partition(null, year));
+            }
+            for (Integer genreId : genreIds) {
+                partitions.add(new Partition(genreId, null));
+                if (year != null) {
+                    partitions.add(new Partition(genreId, year));
+                }
+            }
+            return partitions;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс для поиска фильмов по подстроке в названии и в имени режиссера.
+ * <p>
+ * Каждая строка разбивается на n-граммы длиной от 1 до {@value #GRAM}. Короткий запрос
+ * ищется напрямую по своей n-грамме, длинный - пересечением списков его триграмм
+ * с последующей проверкой подстроки. Результат - идентификаторы фильмов без повторов,
+ * упорядоченные по убыванию лайков, при равенстве - по возрастанию id.
+ * </p>
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    static final int GRAM = 3;
+
+    private static final String GET_FILM_TITLES_QUERY = """
+            SELECT id,
+                   name
+            FROM films;
+            """;
+    private static final String GET_DIRECTOR_NAMES_QUERY = """
+            SELECT id,
+                   name
+            FROM directors;
+            """;
+    private static final String GET_FILM_DIRECTORS_QUERY = """
+            SELECT film_id,
+                   director_id
+            FROM film_directors;
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<String, Set<Integer>> titleGrams = new HashMap<>();
+    private final Map<String, Set<Integer>> directorGrams = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate, FilmPopularityIndex filmPopularityIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.filmPopularityIndex = filmPopularityIndex;
+    }
+
+    // Загрузка индекса при запуске –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, String> loadedTitles = new HashMap<>();
+        Map<Integer, String> loadedDirectors = new HashMap<>();
+        Map<Integer, Set<Integer>> loadedLinks = new HashMap<>();
+        jdbcTemplate.query(GET_FILM_TITLES_QUERY, rs -> {
+            loadedTitles.put(rs.getInt("id"), rs.getString("name"));
+        });
+        jdbcTemplate.query(GET_DIRECTOR_NAMES_QUERY, rs -> {
+            loadedDirectors.put(rs.getInt("id"), rs.getString("name"));
+        });
+        jdbcTemplate.query(GET_FILM_DIRECTORS_QUERY, rs -> {
+            loadedLinks.computeIfAbsent(rs.getInt("film_id"), k -> new HashSet<>()).add(rs.getInt("director_id"));
+        });
+
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            titleGrams.clear();
+            directorGrams.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            loadedDirectors.forEach(this::putDirectorUnlocked);
+            loadedTitles.forEach((filmId, title) ->
+                    putFilmUnlocked(filmId, title, loadedLinks.getOrDefault(filmId, Set.of())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен, фильмов: {}, режиссеров: {}, n-грамм: {}",
+                loadedTitles.size(), loadedDirectors.size(), titleGrams.size() + directorGrams.size());
+    }
+
+    /**
+     * Добавление фильма или замена его названия и режиссеров.
+     *
+     * @param filmId      идентификатор фильма
+     * @param title       название
+     * @param directorIds идентификаторы режиссеров фильма
+     */
+    public void putFilm(int filmId, String title, Collection<Integer> directorIds) {
+        lock.writeLock().lock();
+        try {
+            removeFilmUnlocked(filmId);
+            putFilmUnlocked(filmId, title, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление фильма из индекса –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilmUnlocked(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Добавление режиссера или замена его имени –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            String previous = directorNames.get(directorId);
+            if (previous != null) {
+                removeGrams(directorGrams, previous, directorId);
+            }
+            putDirectorUnlocked(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление режиссера вместе со связями с фильмами ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            String name = directorNames.remove(directorId);
+            if (name != null) {
+                removeGrams(directorGrams, name, directorId);
+            }
+            Set<Integer> films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                for (Integer filmId : films) {
+                    Set<Integer> directors = directorsByFilm.get(filmId);
+                    if (directors != null) {
+                        directors.remove(directorId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Фильмы режиссера.
+     *
+     * @param directorId идентификатор режиссера
+     * @return копия множества id фильмов
+     */
+    public Set<Integer> filmsOfDirector(int directorId) {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(filmsByDirector.getOrDefault(directorId, Set.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Режиссеры фильма.
+     *
+     * @param filmId идентификатор фильма
+     * @return копия множества id режиссеров
+     */
+    public Set<Integer> directorsOfFilm(int filmId) {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(directorsByFilm.getOrDefault(filmId, Set.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск фильмов по подстроке без учета регистра.
+     *
+     * @param query      подстрока
+     * @param byTitle    искать в названиях фильмов
+     * @param byDirector искать в именах режиссеров
+     * @param limit      максимальное количество результатов
+     * @return id фильмов по убыванию лайков
+     */
+    public List<Integer> search(String query, boolean byTitle, boolean byDirector, int limit) {
+        String normalized = normalize(query);
+        Set<Integer> found = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                found.addAll(match(titleGrams, titles, normalized));
+            }
+            if (byDirector) {
+                for (Integer directorId : match(directorGrams, directorNames, normalized)) {
+                    found.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rank(found, limit);
+    }
+
+    // Упорядочивание найденных фильмов по лайкам, в ответ попадает только первая страница
+    private List<Integer> rank(Set<Integer> filmIds, int limit) {
+        Map<Integer, Integer> likes = new HashMap<>(filmIds.size() * 2);
+        filmIds.forEach(filmId -> likes.put(filmId, filmPopularityIndex.getLikes(filmId)));
+        return filmIds.stream()
+                .sorted(Comparator.<Integer>comparingInt(likes::get).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .limit(Math.max(limit, 0))
+                .toList();
+    }
+
+    private static Collection<Integer> match(Map<String, Set<Integer>> grams, Map<Integer, String> texts, String query) {
+        if (query.isEmpty()) {
+            return texts.keySet();
+        }
+        if (query.length() <= GRAM) {
+            return grams.getOrDefault(query, Set.of());
+        }
+
+        List<Set<Integer>> postings = new ArrayList<>();
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            Set<Integer> posting = grams.get(query.substring(i, i + GRAM));
+            if (posting == null) {
+                return List.of();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        // совпадение всех триграмм не гарантирует вхождение подстроки, поэтому кандидаты проверяются
+        List<Integer> result = new ArrayList<>();
+        for (Integer id : postings.getFirst()) {
+            if (containsInAll(postings, id) && texts.get(id).contains(query)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsInAll(List<Set<Integer>> postings, Integer id) {
+        for (int i = 1; i < postings.size(); i++) {
+            if (!postings.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void putFilmUnlocked(int filmId, String title, Collection<Integer> directorIds) {
+        String normalized = normalize(title);
+        titles.put(filmId, normalized);
+        addGrams(titleGrams, normalized, filmId);
+        Set<Integer> directors = new HashSet<>(directorIds);
+        directorsByFilm.put(filmId, directors);
+        for (Integer directorId : directors) {
+            filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+        }
+    }
+
+    private void removeFilmUnlocked(int filmId) {
+        String title = titles.remove(filmId);
+        if (title != null) {
+            removeGrams(titleGrams, title, filmId);
+        }
+        Set<Integer> directors = directorsByFilm.remove(filmId);
+        if (directors != null) {
+            for (Integer directorId : directors) {
+                Set<Integer> films = filmsByDirector.get(directorId);
+                if (films != null) {
+                    films.remove(filmId);
+                    if (films.isEmpty()) {
+                        filmsByDirector.remove(directorId);
+                    }
+                }
+            }
+        }
+    }
+
+    private void putDirectorUnlocked(int directorId, String name) {
+        String normalized = normalize(name);
+        directorNames.put(directorId, normalized);
+        addGrams(directorGrams, normalized, directorId);
+    }
+
+    private static void addGrams(Map<String, Set<Integer>> grams, String text, int id) {
+        for (String gram : grams(text)) {
+            grams.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void removeGrams(Map<String, Set<Integer>> grams, String text, int id) {
+        for (String gram : grams(text)) {
+            Set<Integer> posting = grams.get(gram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Все различные подстроки длиной от 1 до GRAM
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int length = 1; length <= GRAM; length++) {
+            for (int i = 0; i + length <= text.length(); i++) {
+                result.add(text.substring(i, i + length));
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Потокобезопасный кэш ограниченного размера с вытеснением давно не использованных записей (LRU).
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+    private long evictions;
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.maxSize = maxSize;
+        // accessOrder = true: get() переносит запись в конец, первой вытесняется самая старая
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public synchronized boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Ключи записей, удовлетворяющих условию, без изменения порядка вытеснения.
+     *
+     * @param filter условие отбора по ключу и значению
+     * @param limit  максимальное количество ключей
+     * @return ключи от давно использованных к недавним
+     */
+    public synchronized List<K> keysMatching(BiPredicate<K, V> filter, int limit) {
+        List<K> result = new ArrayList<>();
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (filter.test(entry.getKey(), entry.getValue())) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.repository.TypeEntity;
+import ru.yandex.practicum.filmorate.rowMappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.rowMappers.MpaRatingRowMapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Справочники в памяти: жанры, рейтинги MPA и режиссеры.
+ * <p>
+ * Таблицы маленькие и почти не меняются, поэтому загружаются целиком при запуске.
+ * Жанры и рейтинги в приложении не изменяются; режиссеры обновляются из
+ * {@code DirectorDbStorage} при каждой записи. Наружу отдаются копии объектов.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+    private static final String GET_ALL_GENRES_QUERY = """
+            SELECT *
+            FROM genres;
+            """;
+    private static final String GET_ALL_MPA_RATINGS_QUERY = """
+            SELECT *
+            FROM mpa_rating;
+            """;
+    private static final String GET_ALL_DIRECTORS_QUERY = """
+            SELECT id,
+                   name
+            FROM directors;
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, Genre> genres = new ConcurrentSkipListMap<>();
+    private final Map<Integer, MpaRating> mpaRatings = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Director> directors = new ConcurrentSkipListMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder directorWrites = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    public ReferenceDataCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Загрузка справочников –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public synchronized void reload() {
+        Map<Integer, Genre> loadedGenres = new HashMap<>();
+        jdbcTemplate.query(GET_ALL_GENRES_QUERY, new GenreRowMapper()).forEach(genre -> loadedGenres.put(genre.getId(), genre));
+        Map<Integer, MpaRating> loadedRatings = new HashMap<>();
+        jdbcTemplate.query(GET_ALL_MPA_RATINGS_QUERY, new MpaRatingRowMapper()).forEach(mpa -> loadedRatings.put(mpa.getId(), mpa));
+        Map<Integer, Director> loadedDirectors = new HashMap<>();
+        jdbcTemplate.query(GET_ALL_DIRECTORS_QUERY, rs -> {
+            int id = rs.getInt("id");
+            loadedDirectors.put(id, new Director(id, rs.getString("name")));
+        });
+
+        replace(genres, loadedGenres);
+        replace(mpaRatings, loadedRatings);
+        replace(directors, loadedDirectors);
+        reloads.increment();
+        log.info("Справочники загружены, жанров: {}, рейтингов: {}, режиссеров: {}",
+                genres.size(), mpaRatings.size(), directors.size());
+    }
+
+    /**
+     * Хранится ли справочник данного типа в кэше.
+     */
+    public boolean isCached(TypeEntity type) {
+        return type == TypeEntity.GENRE || type == TypeEntity.RATING || type == TypeEntity.DIRECTOR;
+    }
+
+    /**
+     * Проверка существования записи справочника.
+     *
+     * @throws IllegalArgumentException если справочник не кэшируется
+     */
+    public boolean contains(TypeEntity type, Integer id) {
+        Map<Integer, ?> entries = switch (type) {
+            case GENRE -> genres;
+            case RATING -> mpaRatings;
+            case DIRECTOR -> directors;
+            default -> throw new IllegalArgumentException("Справочник не кэшируется: " + type);
+        };
+        return record(id != null && entries.containsKey(id));
+    }
+
+    public Optional<Genre> getGenre(Integer id) {
+        Genre genre = id == null ? null : genres.get(id);
+        record(genre != null);
+        return Optional.ofNullable(genre).map(Genre::toBuilder).map(Genre.GenreBuilder::build);
+    }
+
+    public List<Genre> getAllGenres() {
+        hits.increment();
+        return genres.values().stream().map(genre -> genre.toBuilder().build()).toList();
+    }
+
+    public Optional<MpaRating> getMpaRating(Integer id) {
+        MpaRating mpa = id == null ? null : mpaRatings.get(id);
+        record(mpa != null);
+        return Optional.ofNullable(mpa).map(ReferenceDataCache::copy);
+    }
+
+    public List<MpaRating> getAllMpaRatings() {
+        hits.increment();
+        return mpaRatings.values().stream().map(ReferenceDataCache::copy).toList();
+    }
+
+    public Optional<Director> getDirector(Integer id) {
+        Director director = id == null ? null : directors.get(id);
+        record(director != null);
+        return Optional.ofNullable(director).map(Director::toBuilder).map(Director.DirectorBuilder::build);
+    }
+
+    public List<Director> getAllDirectors() {
+        hits.increment();
+        return directors.values().stream().map(director -> director.toBuilder().build()).toList();
+    }
+
+    // Запись режиссера (создание и обновление) ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void putDirector(Director director) {
+        directors.put(director.getId(), director.toBuilder().build());
+        directorWrites.increment();
+    }
+
+    // Удаление режиссера –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void removeDirector(Integer id) {
+        directors.remove(id);
+        directorWrites.increment();
+    }
+
+    public Stats stats() {
+        return new Stats(genres.size(), mpaRatings.size(), directors.size(),
+                hits.sum(), misses.sum(), directorWrites.sum(), reloads.sum());
+    }
+
+    private boolean record(boolean found) {
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    private static <V> void replace(Map<Integer, V> target, Map<Integer, V> loaded) {
+        target.keySet().retainAll(loaded.keySet());
+        target.putAll(loaded);
+    }
+
+    private static MpaRating copy(MpaRating mpa) {
+        return new MpaRating(mpa.getId(), mpa.getName(), mpa.getDescription());
+    }
+
+    /**
+     * Показатели кэша справочников.
+     *
+     * @param genres         количество жанров
+     * @param mpaRatings     количество рейтингов MPA
+     * @param directors      количество режиссеров
+     * @param hits           обращения, обслуженные из памяти с найденной записью
+     * @param misses         обращения к отсутствующим записям
+     * @param directorWrites изменения режиссеров
+     * @param reloads        полные загрузки из базы
+     */
+    public record Stats(int genres, int mpaRatings, int directors, long hits, long misses,
+                        long directorWrites, long reloads) {
+    }
+}
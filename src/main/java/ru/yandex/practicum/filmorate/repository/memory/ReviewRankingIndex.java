@@ -0,0 +1,210 @@
+package ru.yandex.practicum.filmorate.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг отзывов по полезности в памяти.
+ * <p>
+ * Хранит упорядоченные множества пар (полезность, id отзыва): общее и по каждому фильму.
+ * Порядок выдачи - по убыванию полезности, при равенстве - по возрастанию id, тот же, что у индексов
+ * {@code idx_reviews_useful} и {@code idx_reviews_film_useful}. Страница отзывов начинается сразу после
+ * курсора (полезность, id) последнего отзыва предыдущей страницы и выдается за O(log n + размер страницы).
+ * Источник истины - столбец {@code reviews.useful}; рейтинг меняется вместе с ним.
+ * </p>
+ * Также хранит id последнего существующего отзыва - замену {@code SELECT MAX(review_id)}.
+ */
+@Slf4j
+@Component
+public class ReviewRankingIndex {
+    // Чтение в порядке индекса idx_reviews_film_useful, без сортировки
+    private static final String GET_REVIEWS_FOR_INDEX_QUERY = """
+            SELECT review_id,
+                   film_id,
+                   useful
+            FROM reviews
+            ORDER BY film_id, useful DESC, review_id;
+            """;
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::useful).reversed()
+            .thenComparingInt(Entry::reviewId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> reviews = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(ORDER);
+    private final Map<Integer, NavigableSet<Entry>> byFilm = new HashMap<>();
+    private final AtomicInteger lastReviewId = new AtomicInteger();
+
+    public ReviewRankingIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Загрузка рейтинга при запуске ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public void rebuild() {
+        List<Entry> loaded = new ArrayList<>();
+        jdbcTemplate.query(GET_REVIEWS_FOR_INDEX_QUERY, rs -> {
+            loaded.add(new Entry(rs.getInt("review_id"), rs.getInt("film_id"), rs.getInt("useful")));
+        });
+
+        lock.writeLock().lock();
+        try {
+            reviews.clear();
+            all.clear();
+            byFilm.clear();
+            loaded.forEach(this::addUnlocked);
+            lastReviewId.set(maxReviewIdUnlocked());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Рейтинг отзывов загружен, отзывов: {}, фильмов: {}", loaded.size(), byFilm.size());
+    }
+
+    // Добавление отзыва или замена его полезности –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void put(int reviewId, int filmId, int useful) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(reviewId);
+            addUnlocked(new Entry(reviewId, filmId, useful));
+            lastReviewId.accumulateAndGet(reviewId, Math::max);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Изменение полезности на delta ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void adjust(int reviewId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = removeUnlocked(reviewId);
+            if (entry != null) {
+                addUnlocked(new Entry(reviewId, entry.filmId(), entry.useful() + delta));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Удаление отзыва из рейтинга ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void remove(int reviewId) {
+        lock.writeLock().lock();
+        try {
+            if (removeUnlocked(reviewId) != null && lastReviewId.get() == reviewId) {
+                lastReviewId.set(maxReviewIdUnlocked());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Идентификаторы отзывов страницы рейтинга.
+     *
+     * @param filmId      фильм или {@code null} для отзывов на все фильмы
+     * @param afterUseful полезность последнего отзыва предыдущей страницы или {@code null} для первой страницы
+     * @param afterId     id последнего отзыва предыдущей страницы, учитывается вместе с {@code afterUseful}
+     * @param count       размер страницы
+     * @return id отзывов по убыванию полезности
+     */
+    public List<Integer> page(Integer filmId, Integer afterUseful, Integer afterId, int count) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> ranking = filmId == null
+                    ? all
+                    : byFilm.getOrDefault(filmId, Collections.emptyNavigableSet());
+            if (afterUseful != null) {
+                ranking = ranking.tailSet(new Entry(afterId, 0, afterUseful), false);
+            }
+            List<Integer> result = new ArrayList<>(Math.min(Math.max(count, 0), ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (result.size() < count && iterator.hasNext()) {
+                result.add(iterator.next().reviewId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(int reviewId) {
+        lock.readLock().lock();
+        try {
+            return reviews.containsKey(reviewId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Полезность отзыва с учетом всех примененных оценок.
+     *
+     * @return {@code null}, если отзыва нет
+     */
+    public Integer getUseful(int reviewId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = reviews.get(reviewId);
+            return entry == null ? null : entry.useful();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id последнего существующего отзыва.
+     *
+     * @return 0, если отзывов нет
+     */
+    public int getLastReviewId() {
+        return lastReviewId.get();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return reviews.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Удаление последнего отзыва - редкий случай, поэтому новый максимум ищется перебором
+    private int maxReviewIdUnlocked() {
+        return reviews.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    private void addUnlocked(Entry entry) {
+        reviews.put(entry.reviewId(), entry);
+        all.add(entry);
+        byFilm.computeIfAbsent(entry.filmId(), k -> new TreeSet<>(ORDER)).add(entry);
+    }
+
+    private Entry removeUnlocked(int reviewId) {
+        Entry entry = reviews.remove(reviewId);
+        if (entry != null) {
+            all.remove(entry);
+            NavigableSet<Entry> ranking = byFilm.get(entry.filmId());
+            if (ranking != null) {
+                ranking.remove(entry);
+                if (ranking.isEmpty()) {
+                    byFilm.remove(entry.filmId());
+                }
+            }
+        }
+        return entry;
+    }
+
+    private record Entry(int reviewId, int filmId, int useful) {
+    }
+}
@@ -0,0 +1,238 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.BulkImportResultDto;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Импорт записей из потока NDJSON (по одному JSON-объекту на строку).
+ * <p>
+ * Строки читаются и проверяются в потоке запроса, сохраняются пачками по {@code filmorate.bulk.batch-size}
+ * записей в отдельном потоке: пока пишется одна пачка, набирается следующая. В памяти находится
+ * не больше двух пачек независимо от размера входного потока.
+ * </p>
+ * Ошибочная запись не прерывает импорт: она попадает в отчет с номером строки. Если пачка не сохранилась
+ * целиком, ее записи сохраняются по одной, чтобы отклонить только те, на которых ошибается база.
+ */
+@Slf4j
+@Component
+public class BulkImporter {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxErrors;
+    private final ExecutorService writer = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LongAdder imports = new LongAdder();
+    private final LongAdder importedRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private volatile double lastRowsPerSecond;
+
+    public BulkImporter(ObjectMapper objectMapper, Validator validator,
+                        @Value("${filmorate.bulk.batch-size:1000}") int batchSize,
+                        @Value("${filmorate.bulk.max-errors:1000}") int maxErrors) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Импорт потока.
+     *
+     * @param in      тело запроса в формате NDJSON
+     * @param type    класс записи
+     * @param prepare проверка записи и преобразование в сохраняемый объект; исключение отклоняет запись
+     * @param save    сохранение пачки объектов
+     * @param <D>     тип записи во входном потоке
+     * @param <E>     тип сохраняемого объекта
+     * @return количество сохраненных и отклоненных записей, ошибки по строкам и скорость сохранения
+     */
+    public <D, E> BulkImportResultDto importNdjson(InputStream in, Class<D> type,
+                                                  Function<D, E> prepare, Consumer<List<E>> save) {
+        long started = System.nanoTime();
+        Progress progress = new Progress();
+        CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+        List<Line<E>> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String text;
+            long lineNumber = 0;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                progress.received++;
+                try {
+                    batch.add(new Line<>(lineNumber, prepare.apply(parse(text, type))));
+                } catch (RuntimeException e) {
+                    progress.fail(lineNumber, messageOf(e));
+                }
+                if (batch.size() >= batchSize) {
+                    inFlight = submit(inFlight, batch, save, progress);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // ошибка чтения не должна оставлять незавершенную запись в фоне
+            inFlight = submit(inFlight, batch, save, progress);
+            await(inFlight);
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - started, 1);
+        BulkImportResultDto result = progress.toResult(elapsedNanos);
+        imports.increment();
+        importedRows.add(result.getImported());
+        failedRows.add(result.getFailed());
+        lastRowsPerSecond = result.getRowsPerSecond();
+        log.info("Импорт {}: сохранено {}, отклонено {}, {} мс, {} строк/с", type.getSimpleName(),
+                result.getImported(), result.getFailed(), result.getElapsedMs(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    public Stats stats() {
+        return new Stats(imports.sum(), importedRows.sum(), failedRows.sum(), lastRowsPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.close();
+    }
+
+    // Разбор и проверка аннотаций записи
+    private <D> D parse(String text, Class<D> type) {
+        D item;
+        try {
+            item = objectMapper.readValue(text, type);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Некорректный JSON: " + e.getOriginalMessage());
+        }
+        Set<ConstraintViolation<D>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return item;
+    }
+
+    // Запись пачки начинается после завершения предыдущей, поэтому пачки сохраняются по порядку
+    private <E> CompletableFuture<Void> submit(CompletableFuture<Void> previous, List<Line<E>> batch,
+                                               Consumer<List<E>> save, Progress progress) {
+        await(previous);
+        if (batch.isEmpty()) {
+            return previous;
+        }
+        return CompletableFuture.runAsync(() -> write(batch, save, progress), writer);
+    }
+
+    private <E> void write(List<Line<E>> batch, Consumer<List<E>> save, Progress progress) {
+        try {
+            save.accept(batch.stream().map(Line::item).toList());
+            progress.saved(batch.size());
+            return;
+        } catch (DataAccessException e) {
+            log.warn("Пачка из {} записей не сохранена, сохранение по одной: {}", batch.size(), e.getMessage());
+        }
+        for (Line<E> line : batch) {
+            try {
+                save.accept(List.of(line.item()));
+                progress.saved(1);
+            } catch (RuntimeException e) {
+                progress.fail(line.number(), messageOf(e));
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String messageOf(RuntimeException e) {
+        return Objects.toString(e.getMessage(), e.getClass().getSimpleName());
+    }
+
+    private record Line<E>(long number, E item) {
+    }
+
+    // Счетчики одного импорта; ошибки добавляются и из потока запроса, и из потока записи
+    private class Progress {
+        private long received;
+        private long imported;
+        private long failed;
+        private final List<BulkImportResultDto.RecordError> errors = new ArrayList<>();
+
+        synchronized void saved(int count) {
+            imported += count;
+        }
+
+        synchronized void fail(long line, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new BulkImportResultDto.RecordError(line, message));
+            }
+        }
+
+        synchronized BulkImportResultDto toResult(long elapsedNanos) {
+            errors.sort((a, b) -> Long.compare(a.getLine(), b.getLine()));
+            return BulkImportResultDto.builder()
+                    .received(received)
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(List.copyOf(errors))
+                    .errorsTruncated(failed > errors.size())
+                    .elapsedMs(elapsedNanos / 1_000_000)
+                    .rowsPerSecond(imported * 1_000_000_000d / elapsedNanos)
+                    .build();
+        }
+    }
+
+    /**
+     * Показатели импорта с момента запуска.
+     *
+     * @param imports           выполненные импорты
+     * @param importedRows      сохраненные записи
+     * @param failedRows        отклоненные записи
+     * @param lastRowsPerSecond скорость последнего импорта, записей в секунду
+     */
+    public record Stats(long imports, long importedRows, long failedRows, double lastRowsPerSecond) {
+    }
+}
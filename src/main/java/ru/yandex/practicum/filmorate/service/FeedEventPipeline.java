@@ -0,0 +1,264 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserFeedEvent;
+import ru.yandex.practicum.filmorate.repository.UserFeedStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Асинхронная запись событий ленты.
+ * <p>
+ * События попадают в ограниченную очередь и записываются в {@code user_feed} пачками одним потоком-писателем.
+ * Очередь общая и читается одним потоком, поэтому события каждого пользователя записываются в порядке
+ * публикации. При заполненной очереди публикующий поток ждет места (обратное давление), время ожидания
+ * учитывается в показателях. Место резервируется до общей блокировки публикации, поэтому ожидание
+ * одной публикации не задерживает остальные.
+ * </p>
+ * Записанные события раскладываются по лентам друзей ({@link UserTimelineService}) тем же потоком.
+ * Перед чтением ленты вызывается {@link #awaitWritten()}: запрос видит все события, опубликованные до него.
+ * При остановке приложения очередь дописывается до конца.
+ */
+@Slf4j
+@Component
+public class FeedEventPipeline {
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final UserFeedStorage userFeedStorage;
+    private final UserTimelineService userTimelineService;
+    private final BlockingQueue<PendingEvent> queue;
+    // Свободные места в очереди: разрешение берется до постановки события и возвращается, когда писатель его забрал
+    private final Semaphore slots;
+    private final int capacity;
+    private final int batchSize;
+    private final long writeTimeoutNanos;
+
+    // Номер присваивается под той же блокировкой, что и место в очереди, поэтому номера идут в порядке записи.
+    // Под блокировкой событие только ставится в очередь, место для него уже зарезервировано.
+    // Номер читается без блокировки
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private volatile long publishedSeq;
+    private final ReentrantLock writtenLock = new ReentrantLock();
+    private final Condition written = writtenLock.newCondition();
+    private volatile long writtenSeq;
+
+    // Меняется под publishLock: после остановки в очередь не попадает ни одно событие
+    private volatile boolean running;
+    private Thread writer;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder writtenEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder blockedPublishes = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public FeedEventPipeline(UserFeedStorage userFeedStorage, UserTimelineService userTimelineService,
+                             @Value("${filmorate.feed.pipeline.capacity:10000}") int capacity,
+                             @Value("${filmorate.feed.pipeline.batch-size:500}") int batchSize,
+                             @Value("${filmorate.feed.pipeline.write-timeout:PT5S}") Duration writeTimeout) {
+        this.userFeedStorage = userFeedStorage;
+        this.userTimelineService = userTimelineService;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.slots = new Semaphore(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("feed-writer").start(this::run);
+    }
+
+    /**
+     * Публикация события. Возвращается, как только событие поставлено в очередь;
+     * после остановки писателя событие записывается сразу.
+     */
+    public void publish(UserFeedEvent event) {
+        if (!slots.tryAcquire()) {
+            long started = System.nanoTime();
+            blockedPublishes.increment();
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Публикация события ленты прервана", e);
+            } finally {
+                blockedNanos.add(System.nanoTime() - started);
+            }
+        }
+        publishLock.lock();
+        try {
+            if (!running) {
+                slots.release();
+                userFeedStorage.addEvent(event);
+                return;
+            }
+            PendingEvent pending = new PendingEvent(publishedSeq + 1, event);
+            // место зарезервировано разрешением, поэтому постановка в очередь не ждет
+            queue.add(pending);
+            publishedSeq = pending.seq();
+        } finally {
+            publishLock.unlock();
+        }
+        published.increment();
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Ожидание записи всех событий, опубликованных до вызова, но не дольше {@code write-timeout}.
+     */
+    public void awaitWritten() {
+        long target = publishedSeq;
+        if (writtenSeq >= target) {
+            return;
+        }
+        writtenLock.lock();
+        try {
+            long remaining = writeTimeoutNanos;
+            while (writtenSeq < target && remaining > 0) {
+                remaining = written.awaitNanos(remaining);
+            }
+            if (writtenSeq < target) {
+                log.warn("События ленты не записаны за {} мс, в очереди: {}", writeTimeoutNanos / 1_000_000, queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // публикация, проверившая флаг до остановки, успевает поставить событие в очередь до финального дописывания
+        publishLock.lock();
+        try {
+            running = false;
+        } finally {
+            publishLock.unlock();
+        }
+        writer.join(TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos));
+        // события, опубликованные во время остановки, не должны остаться в очереди
+        List<PendingEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        slots.release(rest.size());
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+    }
+
+    public Stats stats() {
+        long batchCount = batches.sum();
+        long writtenCount = writtenEvents.sum();
+        return new Stats(queue.size(), capacity, maxDepth.get(), published.sum(),
+                writtenCount, failedEvents.sum(), batchCount, batchCount == 0 ? 0 : (double) writtenCount / batchCount,
+                blockedPublishes.sum(), TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+    }
+
+    // Цикл писателя: ждет первое событие, забирает вместе с ним все накопившиеся до размера пачки
+    private void run() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                slots.release(batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Ошибка записи событий ленты", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Пачка отмечается обработанной и при непредвиденной ошибке, иначе чтения ленты ждали бы ее до тайм-аута
+    private void write(List<PendingEvent> batch) {
+        try {
+            List<UserFeedEvent> events = batch.stream().map(PendingEvent::event).toList();
+            List<UserFeedEvent> stored = events;
+            try {
+                userFeedStorage.addEvents(events);
+                writtenEvents.add(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Пачка из {} событий ленты не записана, запись по одному: {}", batch.size(), e.getMessage());
+                stored = new ArrayList<>(events.size());
+                for (UserFeedEvent event : events) {
+                    try {
+                        userFeedStorage.addEvent(event);
+                        stored.add(event);
+                        writtenEvents.increment();
+                    } catch (RuntimeException single) {
+                        // пользователь удален, пока событие находилось в очереди
+                        failedEvents.increment();
+                        log.warn("Событие ленты пользователя {} не записано: {}", event.getUserId(), single.getMessage());
+                    }
+                }
+            }
+            try {
+                userTimelineService.fanOut(stored);
+            } catch (RuntimeException e) {
+                log.error("События ленты не разложены по лентам друзей", e);
+            }
+            batches.increment();
+        } finally {
+            markWritten(batch.getLast().seq());
+        }
+    }
+
+    private void markWritten(long seq) {
+        writtenLock.lock();
+        try {
+            writtenSeq = Math.max(writtenSeq, seq);
+            written.signalAll();
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+
+    private record PendingEvent(long seq, UserFeedEvent event) {
+    }
+
+    /**
+     * Показатели очереди событий ленты.
+     *
+     * @param depth            события в очереди
+     * @param capacity         емкость очереди
+     * @param maxDepth         наибольшая наблюдавшаяся длина очереди
+     * @param published        опубликованные события
+     * @param written          записанные события
+     * @param failed           события, отброшенные из-за ошибки записи
+     * @param batches          записанные пачки
+     * @param avgBatchSize     средний размер пачки
+     * @param blockedPublishes публикации, ожидавшие места в очереди
+     * @param blockedMillis    суммарное время ожидания места в очереди
+     */
+    public record Stats(int depth, int capacity, int maxDepth, long published, long written, long failed,
+                        long batches, double avgBatchSize, long blockedPublishes, long blockedMillis) {
+    }
+}
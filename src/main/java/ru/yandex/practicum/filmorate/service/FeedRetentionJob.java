@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.UserFeedStorage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Перенос старых событий ленты в архив.
+ * <p>
+ * Включается параметром {@code filmorate.feed.retention.enabled}: перенесенные события пропадают
+ * из {@code GET /users/{id}/feed}, поэтому по умолчанию перенос выключен. Во включенном состоянии
+ * раз в {@code interval} события старше {@code max-age} переносятся из {@code user_feed} в {@code user_feed_archive}
+ * пачками по {@code batch-size}, каждая в своей транзакции, чтобы не держать длинных блокировок. Так рабочая таблица и индекс по (user_id, timestamp) остаются небольшими.
+ * </p>
+ * Перенесенные события удаляются и из лент друзей в памяти ({@link UserTimelineService}).
+ */
+@Slf4j
+@Component
+public class FeedRetentionJob {
+    private final UserFeedStorage userFeedStorage;
+    private final UserTimelineService userTimelineService;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder archived = new LongAdder();
+    private volatile long lastCutoff;
+    private volatile long lastRunMillis;
+
+    public FeedRetentionJob(UserFeedStorage userFeedStorage, UserTimelineService userTimelineService,
+                            @Value("${filmorate.feed.retention.enabled:false}") boolean enabled,
+                            @Value("${filmorate.feed.retention.max-age:P90D}") Duration maxAge,
+                            @Value("${filmorate.feed.retention.batch-size:10000}") int batchSize) {
+        this.userFeedStorage = userFeedStorage;
+        this.userTimelineService = userTimelineService;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.retention.interval:PT1H}")
+    public void archiveOldEvents() {
+        if (!enabled) {
+            return;
+        }
+        archiveBefore(Instant.now().minus(maxAge).toEpochMilli());
+    }
+
+    /**
+     * Перенос в архив всех событий старше {@code before}.
+     *
+     * @param before время в мс
+     * @return количество перенесенных событий
+     */
+    public long archiveBefore(long before) {
+        long started = System.nanoTime();
+        long moved = 0;
+        int batch;
+        do {
+            batch = userFeedStorage.archiveBefore(before, batchSize);
+            moved += batch;
+        } while (batch == batchSize);
+        if (moved > 0) {
+            userTimelineService.archived(before);
+        }
+
+        runs.increment();
+        archived.add(moved);
+        lastCutoff = before;
+        lastRunMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        if (moved > 0) {
+            log.info("В архив перенесено событий ленты: {} за {} мс", moved, lastRunMillis);
+        }
+        return moved;
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, maxAge.toString(), runs.sum(), archived.sum(), lastCutoff, lastRunMillis);
+    }
+
+    /**
+     * Показатели архивации ленты.
+     *
+     * @param enabled       включен ли перенос по расписанию
+     * @param maxAge        срок хранения событий в рабочей таблице
+     * @param runs          выполненные переносы
+     * @param archived      перенесенные события
+     * @param lastCutoff    граница времени последнего переноса, мс
+     * @param lastRunMillis длительность последнего переноса
+     */
+    public record Stats(boolean enabled, String maxAge, long runs, long archived, long lastCutoff, long lastRunMillis) {
+    }
+}
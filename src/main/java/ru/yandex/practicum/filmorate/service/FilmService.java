@@ -4,11 +4,15 @@ import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.BulkImportResultDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.FilmExportDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.exeptions.FilmUpdateException;
 import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
-import ru.yandex.practicum.filmorate.exeptions.LikeException;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.dto.FilmDtoMapper;
 import ru.yandex.practicum.filmorate.mapper.toEntity.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -16,10 +20,14 @@ import ru.yandex.practicum.filmorate.repository.FilmStorage;
 import ru.yandex.practicum.filmorate.repository.impl.DirectorDbStorage;
 import ru.yandex.practicum.filmorate.repository.impl.FilmDbStorage;
 import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
@@ -28,17 +36,33 @@ public class FilmService {
     private final UserDbStorage userStorage;
     private final UserFeedService userFeedService;
     private final DirectorDbStorage directorDbStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final RecommendationCache recommendationCache;
+    private final FilmSuggestTrie filmSuggestTrie;
+    private final BulkImporter bulkImporter;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final int searchPageSize;
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private static final Logger log = LoggerFactory.getLogger(FilmService.class);
 
     @Autowired
     public FilmService(FilmDbStorage filmStorage, UserDbStorage userStorage, UserFeedService userFeedService,
-                       FilmDbStorage filmDbStorage, DirectorDbStorage directorDbStorage) {
+                       FilmDbStorage filmDbStorage, DirectorDbStorage directorDbStorage,
+                       FilmPopularityIndex filmPopularityIndex, RecommendationCache recommendationCache,
+                       FilmSuggestTrie filmSuggestTrie, BulkImporter bulkImporter, LikeWriteBuffer likeWriteBuffer,
+                       @Value("${filmorate.search.page-size:100}") int searchPageSize) {
         this.filmDbStorage = filmDbStorage;
         this.userStorage = userStorage;
         this.userFeedService = userFeedService;
         this.filmStorage = filmStorage;
         this.directorDbStorage = directorDbStorage;
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.recommendationCache = recommendationCache;
+        this.filmSuggestTrie = filmSuggestTrie;
+        this.bulkImporter = bulkImporter;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.searchPageSize = searchPageSize;
     }
 
     public FilmDto create(FilmDto requestFilm) {
@@ -48,6 +72,30 @@ public class FilmService {
         return FilmDtoMapper.mapToFilmDto(film);
     }
 
+    /**
+     * Импорт фильмов из потока NDJSON. Каждая запись проверяется отдельно, ссылки на рейтинг,
+     * жанры и режиссеров - по справочникам в памяти; ошибочные записи пропускаются и попадают в отчет.
+     *
+     * @param in тело запроса, по одному фильму на строку
+     */
+    public BulkImportResultDto importFilms(InputStream in) {
+        return bulkImporter.importNdjson(in, FilmDto.class, filmDto -> {
+            Film film = FilmMapper.mapToFilm(filmDto);
+            filmDbStorage.checkReferences(film);
+            return film;
+        }, filmDbStorage::createAll);
+    }
+
+    /**
+     * Возвращает фильмы по списку идентификаторов в том же порядке.
+     * Отсутствующие в базе идентификаторы пропускаются.
+     *
+     * @param ids идентификаторы фильмов
+     */
+    public List<FilmDto> getFilmsByIds(List<Integer> ids) {
+        return filmDbStorage.getByIds(ids).stream().map(FilmDtoMapper::mapToFilmDto).toList();
+    }
+
     @Transactional
     public FilmDto update(FilmDto filmDto) {
         // 1. Проверяем существование фильма
@@ -61,33 +109,83 @@ public class FilmService {
         return FilmDtoMapper.mapToFilmDto(updatedFilm);
     }
 
+    /**
+     * Возвращает самые популярные фильмы с фильтром по жанру и году.
+     * Фильмы выбираются из раздела рейтинга в памяти за время, пропорциональное {@code count}.
+     *
+     * @param count   количество фильмов
+     * @param genreId жанр (необязателен)
+     * @param year    год выпуска (необязателен)
+     */
     public List<FilmDto> getPopularFilmsByGenreAndYear(int count, Integer genreId, Integer year) {
-        List<Film> popularFilms = filmStorage.getPopularFilmsByGenreAndYear(count, genreId, year);
+        List<Film> popularFilms = filmStorage.getByIds(filmPopularityIndex.top(count, genreId, year));
         return popularFilms.stream().map(FilmDtoMapper::mapToFilmDto).toList();
     }
 
     public List<FilmDto> getAll() {
-        log.info("Отправлен список всех фильмов, size: {}", filmDbStorage.getAll().size());
         List<Film> films = filmDbStorage.getAll();
+        log.info("Отправлен список всех фильмов, size: {}", films.size());
+        return films.stream().map(FilmDtoMapper::mapToFilmDto).toList();
+    }
+
+    /**
+     * Страница фильмов по возрастанию id.
+     *
+     * @param after id последнего фильма предыдущей страницы; {@code null} - с начала
+     * @param limit размер страницы; {@code null} - {@value #DEFAULT_PAGE_SIZE}
+     */
+    public List<FilmDto> getPage(Integer after, Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным");
+        }
+        List<Film> films = filmDbStorage.getPage(after, pageSize);
+        log.info("Отправлена страница фильмов после id: {}, size: {}", after, films.size());
         return films.stream().map(FilmDtoMapper::mapToFilmDto).toList();
     }
 
+    /**
+     * Передает все фильмы по одному, не собирая их в список.
+     *
+     * @param consumer получатель фильмов
+     */
+    public void streamAll(Consumer<FilmDto> consumer) {
+        filmDbStorage.streamAll(film -> consumer.accept(FilmDtoMapper.mapToFilmDto(film)));
+    }
+
+    /**
+     * Выгрузка всего каталога одним проходом по базе, без сбора фильмов в список.
+     *
+     * @param consumer получатель фильмов с жанрами, режиссерами, рейтингом и количеством лайков
+     */
+    public void exportAll(Consumer<FilmExportDto> consumer) {
+        filmDbStorage.exportAll(consumer);
+    }
+
     public void addLike(Integer filmId, Integer userId) {
         validateFilmAndUserId(filmId, userId);
-        filmDbStorage.addLike(filmId, userId).orElseThrow(() -> new LikeException("Ошибка при добавлении лайка"));
+        likeWriteBuffer.like(filmId, userId);
+        recommendationCache.invalidateLike(userId, filmId);
         userFeedService.createEvent(userId, "LIKE", "ADD", filmId);
         log.info("Добавлен лайка для фильма id: {}, пользователем с id: {}", filmId, userId);
     }
 
     public void removeLike(Integer filmId, Integer userId) {
         validateFilmAndUserId(filmId, userId);
-        filmDbStorage.removeLike(filmId, userId).orElseThrow(() -> new LikeException("Ошибка при удалении лайка"));
+        likeWriteBuffer.unlike(filmId, userId);
+        recommendationCache.invalidateLike(userId, filmId);
         userFeedService.createEvent(userId, "LIKE", "REMOVE", filmId);
         log.info("Удален лайк для фильма с id: {}, пользователем с id: {}", filmId, userId);
     }
 
+    /**
+     * Возвращает самые популярные фильмы.
+     * Порядок берется из рейтинга в памяти, из базы загружаются только выбранные фильмы.
+     *
+     * @param count количество фильмов
+     */
     public List<FilmDto> getPopularFilm(Integer count) {
-        List<Film> popularFilms = filmDbStorage.getPopularFilm(count);
+        List<Film> popularFilms = filmDbStorage.getByIds(filmPopularityIndex.top(count));
         log.info("Отправлен список популярных фильмов, count: {}", count);
         return popularFilms.stream().map(FilmDtoMapper::mapToFilmDto).toList();
     }
@@ -126,9 +224,10 @@ public class FilmService {
         return filmDbStorage.getLikedFilmsIds(userId);
     }
 
+    // Проверка по реестру id в памяти, без загрузки фильма и пользователя
     private void validateFilmAndUserId(Integer filmId, Integer userId) {
-        if (filmDbStorage.getById(filmId).isEmpty()) throw new NotFoundException("Film not found");
-        if (userStorage.getUserById(userId).isEmpty()) throw new NotFoundException("User not found");
+        if (!filmDbStorage.existsById(filmId)) throw new NotFoundException("Film not found");
+        if (!userStorage.existsById(userId)) throw new NotFoundException("User not found");
     }
 
     /**
@@ -141,7 +240,9 @@ public class FilmService {
         if (!filmDbStorage.existsById(id)) {
             throw new NotFoundException("Фильм с id не найден: " + id);
         }
+        likeWriteBuffer.flush();
         filmDbStorage.delete(id);
+        recommendationCache.invalidateAll();
         log.info("Удаленный фильм с id: {}", id);
     }
 
@@ -167,18 +268,40 @@ public class FilmService {
      *
      * @param stringForSearch подстрока для поиска
      * @param by              параметры поиска
+     * @param count           размер страницы; если не указан, берется {@code filmorate.search.page-size}
      */
-    public List<FilmDto> searchFilms(String stringForSearch, List<String> by) {
+    public List<FilmDto> searchFilms(String stringForSearch, List<String> by, Integer count) {
         if (by.isEmpty()) {
             throw new RuntimeException("Параметры поиска не указаны");
         }
-        List<Film> response = filmStorage.search(stringForSearch, by);
-        return filmStorage.search(stringForSearch, by)
+        boolean byTitle = by.contains("title");
+        boolean byDirector = by.contains("director");
+        if (!byTitle && !byDirector) {
+            throw new RuntimeException("Неподходящий параметр запроса");
+        }
+        return filmStorage.search(stringForSearch, byTitle, byDirector, count != null ? count : searchPageSize)
                 .stream()
                 .map(FilmDtoMapper::mapToFilmDto)
                 .toList();
     }
 
+    /**
+     * Подсказки при вводе поискового запроса. Обращений к базе данных нет.
+     *
+     * @param prefix введенный текст
+     * @param limit  максимальное количество подсказок
+     */
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        return filmSuggestTrie.suggest(prefix, limit).stream()
+                .map(suggestion -> SuggestionDto.builder()
+                        .text(suggestion.text())
+                        .type(suggestion.kind().name())
+                        .id(suggestion.id())
+                        .likes(suggestion.likes())
+                        .build())
+                .toList();
+    }
+
     public Collection<FilmDto> getFilmsDirector(Long id, String sortBy) {
         directorDbStorage.existById(id);
         return filmStorage.getFilmsDirector(id, sortBy).stream().map(FilmDtoMapper::mapToFilmDto).toList();
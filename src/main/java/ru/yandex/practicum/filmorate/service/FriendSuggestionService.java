@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDto;
+import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
+import ru.yandex.practicum.filmorate.mapper.dto.UserDtoMapper;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
+import ru.yandex.practicum.filmorate.repository.memory.LruCache;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Возможные друзья пользователя ("люди, которых вы можете знать").
+ * <p>
+ * Кандидаты ищутся обходом графа дружбы в памяти на два шага: друзья друзей, которых нет среди друзей
+ * пользователя. Кандидат получает {@code 1} за каждого общего друга и {@code like-weight} за каждый фильм,
+ * лайкнутый обоими. Обход ограничен {@code budget} просмотренными ребрами, поровну на каждого друга,
+ * поэтому время расчета не зависит от размера графа. Если бюджета не хватает на всех, обход друзей и их
+ * друзей начинается со случайной позиции, чтобы выборка не смещалась к пользователям с меньшими id.
+ * </p>
+ * Результаты кэшируются; добавление или удаление друга сбрасывает записи самого пользователя и тех,
+ * у кого он в друзьях. Изменения лайков учитываются по истечении {@code ttl}.
+ */
+@Slf4j
+@Service
+public class FriendSuggestionService {
+    private static final int DEFAULT_LIMIT = 10;
+    private static final Comparator<Suggestion> SUGGESTION_ORDER = Comparator.comparingDouble(Suggestion::score).reversed()
+            .thenComparing(Comparator.comparingInt(Suggestion::mutualFriends).reversed())
+            .thenComparingInt(Suggestion::userId);
+
+    private final UserDbStorage userStorage;
+    private final FriendshipGraph friendshipGraph;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final LruCache<Integer, CachedSuggestions> cache;
+    private final int budget;
+    private final int maxResults;
+    private final double likeWeight;
+    private final long ttlNanos;
+    // Метки идущих расчетов: сброс снимает метки затронутых пользователей, и их результат не сохраняется.
+    // Расчеты для остальных пользователей сброс не отменяет
+    private final Map<Integer, Object> computing = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public FriendSuggestionService(UserDbStorage userStorage, FriendshipGraph friendshipGraph,
+                                   FilmLikeMatrix filmLikeMatrix,
+                                   @Value("${filmorate.friends.suggestions.budget:10000}") int budget,
+                                   @Value("${filmorate.friends.suggestions.max-results:50}") int maxResults,
+                                   @Value("${filmorate.friends.suggestions.like-weight:0.5}") double likeWeight,
+                                   @Value("${filmorate.friends.suggestions.cache.max-size:10000}") int cacheSize,
+                                   @Value("${filmorate.friends.suggestions.cache.ttl:PT10M}") Duration ttl) {
+        this.userStorage = userStorage;
+        this.friendshipGraph = friendshipGraph;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.budget = budget;
+        this.maxResults = maxResults;
+        this.likeWeight = likeWeight;
+        this.cache = new LruCache<>(cacheSize);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Возможные друзья пользователя по убыванию оценки.
+     *
+     * @param limit количество кандидатов, не больше {@code max-results}
+     * @throws NotFoundException если пользователь не найден
+     */
+    public List<FriendSuggestionDto> getSuggestions(int userId, Integer limit) {
+        int size = limit != null ? limit : DEFAULT_LIMIT;
+        if (size <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден.");
+        }
+
+        List<Suggestion> suggestions = cachedOrCompute(userId);
+        List<Suggestion> page = suggestions.subList(0, Math.min(size, suggestions.size()));
+        Map<Integer, User> users = new HashMap<>();
+        userStorage.getUsersByIds(page.stream().mapToInt(Suggestion::userId).toArray())
+                .forEach(user -> users.put(user.getId(), user));
+
+        // удаленные после расчета пользователи пропускаются
+        return page.stream()
+                .filter(suggestion -> users.containsKey(suggestion.userId()))
+                .map(suggestion -> FriendSuggestionDto.builder()
+                        .user(UserDtoMapper.mapToUserDto(users.get(suggestion.userId())))
+                        .mutualFriends(suggestion.mutualFriends())
+                        .commonLikes(suggestion.commonLikes())
+                        .score(suggestion.score())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Сброс после добавления или удаления друга {@code userId}: меняются друзья друзей у него самого
+     * и у всех, у кого он в друзьях.
+     */
+    public void invalidateFriendship(int userId) {
+        int[] followers = friendshipGraph.followersOf(userId);
+        computing.keySet().removeIf(computingUserId -> computingUserId == userId
+                || Arrays.binarySearch(followers, computingUserId) >= 0);
+        // у популярного пользователя подписчиков может быть больше, чем записей в кэше:
+        // тогда дешевле проверить каждую запись кэша
+        Collection<Integer> affected;
+        if (cache.size() < followers.length) {
+            affected = cache.keysMatching((cachedUserId, cached) -> cachedUserId == userId
+                    || Arrays.binarySearch(followers, cachedUserId) >= 0, Integer.MAX_VALUE);
+        } else {
+            affected = new ArrayList<>(followers.length + 1);
+            affected.add(userId);
+            Arrays.stream(followers).forEach(affected::add);
+        }
+        int removed = 0;
+        for (Integer affectedUserId : affected) {
+            if (cache.remove(affectedUserId) != null) {
+                removed++;
+            }
+        }
+        invalidations.add(removed);
+    }
+
+    // Полный сброс (удаление пользователя) ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void invalidateAll() {
+        computing.clear();
+        invalidations.add(cache.size());
+        cache.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(cache.size(), cache.maxSize(), hits.sum(), misses.sum(), invalidations.sum(),
+                budgetExhausted.sum());
+    }
+
+    private List<Suggestion> cachedOrCompute(int userId) {
+        CachedSuggestions cached = cache.get(userId);
+        if (cached != null && System.nanoTime() - cached.computedAt() <= ttlNanos) {
+            hits.increment();
+            return cached.suggestions();
+        }
+        misses.increment();
+        Object stamp = new Object();
+        computing.put(userId, stamp);
+        List<Suggestion> suggestions;
+        try {
+            suggestions = compute(userId);
+        } catch (RuntimeException e) {
+            computing.remove(userId, stamp);
+            throw e;
+        }
+        // под блокировкой кэша: сброс, снявший метку позже, удалит и сохраненную запись
+        synchronized (cache) {
+            if (computing.remove(userId, stamp)) {
+                cache.put(userId, new CachedSuggestions(suggestions, System.nanoTime()));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Обход друзей друзей в пределах бюджета и оценка кандидатов.
+     *
+     * @return не больше {@code max-results} кандидатов по убыванию оценки
+     */
+    List<Suggestion> compute(int userId) {
+        int[] friends = friendshipGraph.friendsOf(userId);
+        if (friends.length == 0) {
+            return List.of();
+        }
+        int perFriend = Math.max(1, budget / friends.length);
+        int visited = 0;
+        Map<Integer, Integer> mutualFriends = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int firstFriend = friends.length > budget ? random.nextInt(friends.length) : 0;
+        for (int f = 0; f < friends.length; f++) {
+            if (visited >= budget) {
+                budgetExhausted.increment();
+                break;
+            }
+            int[] friendsOfFriend = friendshipGraph.friendsOf(friends[(firstFriend + f) % friends.length]);
+            int scanned = Math.min(friendsOfFriend.length, Math.min(perFriend, budget - visited));
+            // массивы друзей отсортированы по id: просмотр части массива начинается со случайной позиции
+            int offset = scanned < friendsOfFriend.length ? random.nextInt(friendsOfFriend.length) : 0;
+            for (int i = 0; i < scanned; i++) {
+                int candidateId = friendsOfFriend[(offset + i) % friendsOfFriend.length];
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    mutualFriends.merge(candidateId, 1, Integer::sum);
+                }
+            }
+            visited += scanned;
+        }
+
+        int[] userFilms = filmLikeMatrix.filmsOf(userId);
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(maxResults + 1, SUGGESTION_ORDER.reversed());
+        mutualFriends.forEach((candidateId, mutual) -> {
+            int commonLikes = intersectionSize(userFilms, filmLikeMatrix.filmsOf(candidateId));
+            best.offer(new Suggestion(candidateId, mutual, commonLikes, mutual + likeWeight * commonLikes));
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        });
+        List<Suggestion> result = new ArrayList<>(best);
+        result.sort(SUGGESTION_ORDER);
+        log.debug("Возможные друзья пользователя {}: кандидатов {}, просмотрено ребер {}", userId,
+                mutualFriends.size(), visited);
+        return List.copyOf(result);
+    }
+
+    private static int intersectionSize(int[] first, int[] second) {
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    record Suggestion(int userId, int mutualFriends, int commonLikes, double score) {
+    }
+
+    private record CachedSuggestions(List<Suggestion> suggestions, long computedAt) {
+    }
+
+    /**
+     * Показатели кэша возможных друзей.
+     *
+     * @param size            записи в кэше
+     * @param maxSize         максимальное количество записей
+     * @param hits            запросы, обслуженные из кэша
+     * @param misses          расчеты при запросе
+     * @param invalidations   записи, сброшенные из-за изменения дружбы
+     * @param budgetExhausted расчеты, прерванные по исчерпанию бюджета обхода
+     */
+    public record Stats(int size, int maxSize, long hits, long misses, long invalidations, long budgetExhausted) {
+    }
+}
@@ -0,0 +1,278 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лайков (write-behind).
+ * <p>
+ * Включается параметром {@code filmorate.likes.write-behind.enabled}; в выключенном состоянии лайк сразу
+ * пишется в базу через {@link FilmDbStorage}. Во включенном - изменение применяется к матрице лайков и рейтингу
+ * в памяти (популярные фильмы и рекомендации видят его сразу) и попадает в буфер, разбитый на полосы
+ * по паре (фильм, пользователь), чтобы запросы к разным парам не ждали друг друга. Лайк и последующая отмена
+ * той же пары взаимно уничтожаются и в базу не пишутся.
+ * </p>
+ * Буфер сбрасывается в {@code film_likes} пачками раз в {@code flush-interval}. Если буфер заполнен или последний
+ * сброс был раньше {@code max-lag}, новая пара пишется в базу синхронно - так ограничивается объем лайков,
+ * которые можно потерять при аварийной остановке. Лайки в ответах со списками фильмов берутся из матрицы
+ * и включают буферизованные, фильмы режиссера по лайкам упорядочиваются по рейтингу в памяти;
+ * общие фильмы читаются из базы и видят их после сброса.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmSuggestTrie filmSuggestTrie;
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxLagNanos;
+    private final Stripe[] stripes;
+
+    // Сброс и синхронная запись при переполнении выполняются по очереди, чтобы не переставить записи одной пары
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long lastFlushNanos = System.nanoTime();
+
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder syncWrites = new LongAdder();
+
+    public LikeWriteBuffer(FilmDbStorage filmDbStorage, FilmLikeMatrix filmLikeMatrix,
+                           FilmPopularityIndex filmPopularityIndex, FilmSuggestTrie filmSuggestTrie,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.stripes:64}") int stripes,
+                           @Value("${filmorate.likes.write-behind.max-lag:PT2S}") Duration maxLag) {
+        this.filmDbStorage = filmDbStorage;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.filmSuggestTrie = filmSuggestTrie;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxLagNanos = maxLag.toNanos();
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    // Добавление лайка –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void like(int filmId, int userId) {
+        if (!enabled) {
+            filmDbStorage.addLike(filmId, userId);
+            return;
+        }
+        write(filmId, userId, true);
+    }
+
+    // Удаление лайка –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void unlike(int filmId, int userId) {
+        if (!enabled) {
+            filmDbStorage.removeLike(filmId, userId);
+            return;
+        }
+        write(filmId, userId, false);
+    }
+
+    /**
+     * Запись всех накопленных изменений в базу. Вызывается по расписанию, перед удалением фильмов
+     * и пользователей (их лайки удаляются из базы) и при остановке приложения.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval:PT0.2S}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<FilmDbStorage.LikeChange> changes = drain();
+            lastFlushNanos = System.nanoTime();
+            if (changes.isEmpty()) {
+                return;
+            }
+            try {
+                filmDbStorage.applyLikes(changes);
+                flushedRows.add(changes.size());
+            } catch (RuntimeException e) {
+                log.warn("Пачка из {} лайков не записана, запись по одному: {}", changes.size(), e.getMessage());
+                for (FilmDbStorage.LikeChange change : changes) {
+                    try {
+                        filmDbStorage.applyLikes(List.of(change));
+                        flushedRows.increment();
+                    } catch (RuntimeException single) {
+                        // фильм или пользователь удален, пока лайк находился в буфере
+                        failedRows.increment();
+                        log.warn("Лайк пользователя {} фильму {} не записан: {}",
+                                change.userId(), change.filmId(), single.getMessage());
+                    }
+                }
+            }
+            flushes.increment();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, pending.get(), capacity, buffered.sum(), coalesced.sum(), flushes.sum(),
+                flushedRows.sum(), failedRows.sum(), syncWrites.sum(),
+                Duration.ofNanos(System.nanoTime() - lastFlushNanos).toMillis());
+    }
+
+    private void write(int filmId, int userId, boolean liked) {
+        long key = ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+        Stripe stripe = stripes[Math.floorMod(Long.hashCode(key) * 0x9E3779B9, stripes.length)];
+        stripe.lock.lock();
+        try {
+            if (stripe.offer(key, filmId, userId, liked)) {
+                return;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        // буфер переполнен или сброс отстает: пара пишется синхронно, после завершения текущего сброса
+        flushLock.lock();
+        try {
+            stripe.lock.lock();
+            try {
+                if (stripe.offer(key, filmId, userId, liked)) {
+                    return;
+                }
+                syncWrites.increment();
+                if (liked) {
+                    filmDbStorage.addLike(filmId, userId);
+                } else {
+                    filmDbStorage.removeLike(filmId, userId);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean hasRoom() {
+        return pending.get() < capacity && System.nanoTime() - lastFlushNanos <= maxLagNanos;
+    }
+
+    // Изъятие всех изменений из буфера; пары, вернувшиеся к записанному в базе состоянию, уже удалены
+    private List<FilmDbStorage.LikeChange> drain() {
+        List<FilmDbStorage.LikeChange> changes = new ArrayList<>(pending.get());
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (PendingLike like : stripe.likes.values()) {
+                    changes.add(new FilmDbStorage.LikeChange(like.filmId, like.userId, like.liked));
+                }
+                pending.addAndGet(-stripe.likes.size());
+                stripe.likes.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return changes;
+    }
+
+    // Полоса буфера: изменения пар, попавших в нее по хэшу, под собственной блокировкой
+    private class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, PendingLike> likes = new HashMap<>();
+
+        /**
+         * Применение изменения к памяти и буферу. Вызывается под блокировкой полосы.
+         *
+         * @return false, если для новой пары нет места и ее нужно записать синхронно
+         */
+        boolean offer(long key, int filmId, int userId, boolean liked) {
+            boolean current = filmLikeMatrix.contains(userId, filmId);
+            if (current == liked) {
+                return true;
+            }
+            PendingLike like = likes.get(key);
+            if (like == null) {
+                if (!hasRoom()) {
+                    return false;
+                }
+                // текущее состояние в памяти совпадает с базой: изменений пары в буфере нет
+                like = new PendingLike(filmId, userId, current);
+                likes.put(key, like);
+                pending.incrementAndGet();
+            }
+            like.liked = liked;
+            buffered.increment();
+            if (liked) {
+                filmLikeMatrix.like(userId, filmId);
+                filmPopularityIndex.adjust(filmId, 1);
+            } else {
+                filmLikeMatrix.unlike(userId, filmId);
+                filmPopularityIndex.adjust(filmId, -1);
+            }
+            filmSuggestTrie.likesChanged(filmId);
+            if (like.liked == like.persisted) {
+                likes.remove(key);
+                pending.decrementAndGet();
+                coalesced.increment();
+            }
+            return true;
+        }
+    }
+
+    private static class PendingLike {
+        private final int filmId;
+        private final int userId;
+        private final boolean persisted;
+        private boolean liked;
+
+        PendingLike(int filmId, int userId, boolean persisted) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.persisted = persisted;
+        }
+    }
+
+    /**
+     * Показатели буфера лайков.
+     *
+     * @param enabled        включена ли отложенная запись
+     * @param pending        пары, ожидающие записи
+     * @param capacity       максимальное количество пар в буфере
+     * @param buffered       изменения, принятые в буфер
+     * @param coalesced      пары, у которых лайк и отмена взаимно уничтожились
+     * @param flushes        сбросы буфера
+     * @param flushedRows    изменения, записанные в базу при сбросе
+     * @param failedRows     изменения, отброшенные из-за ошибки записи
+     * @param syncWrites     синхронные записи при переполнении или отставании сброса
+     * @param lagMillis      время с последнего сброса
+     */
+    public record Stats(boolean enabled, int pending, int capacity, long buffered, long coalesced, long flushes,
+                        long flushedRows, long failedRows, long syncWrites, long lagMillis) {
+    }
+}
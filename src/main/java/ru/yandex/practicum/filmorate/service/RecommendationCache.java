@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.LruCache;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш готовых рекомендаций по пользователям.
+ * <p>
+ * Хранит только идентификаторы фильмов, сами фильмы загружаются из базы при каждом запросе.
+ * Изменение лайка только ставится в очередь: раз в {@code invalidation-interval} фоновая задача удаляет
+ * записи всех пользователей, чьи рекомендации от него зависят, и ставит их в очередь на пересчет.
+ * До этого может выдаваться прежний результат. Записи старше {@code ttl} продолжают выдаваться,
+ * но тоже пересчитываются в фоне.
+ * </p>
+ * Отдельный компонент без зависимостей от сервисов, чтобы {@link FilmService} мог сбрасывать кэш
+ * без циклической зависимости с {@link RecommendationService}.
+ */
+@Slf4j
+@Component
+public class RecommendationCache {
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final LruCache<Integer, CachedRecommendation> cache;
+    private final long ttlNanos;
+
+    // Пользователи, чьи записи удалены из-за изменения лайков; пересчитываются первыми
+    private final Set<Integer> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // Изменения лайков, еще не примененные к кэшу
+    private final Queue<LikeChange> likeChanges = new ConcurrentLinkedQueue<>();
+    // Метки идущих расчетов: сброс снимает метки затронутых пользователей, и их результат не сохраняется.
+    // Расчеты для остальных пользователей сброс не отменяет
+    private final Map<Integer, Object> computing = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public RecommendationCache(FilmLikeMatrix filmLikeMatrix,
+                               @Value("${filmorate.recommendations.cache.max-size:10000}") int maxSize,
+                               @Value("${filmorate.recommendations.cache.ttl:PT10M}") Duration ttl) {
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.cache = new LruCache<>(maxSize);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Рекомендации из кэша.
+     *
+     * @param userId идентификатор пользователя
+     * @return идентификаторы фильмов или пустой Optional, если записи нет
+     */
+    public Optional<List<Integer>> get(int userId) {
+        CachedRecommendation cached = cache.get(userId);
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        if (isStale(cached, System.nanoTime())) {
+            staleHits.increment();
+        }
+        return Optional.of(cached.filmIds());
+    }
+
+    /**
+     * Метка расчета рекомендаций пользователя. Берется до начала расчета и передается в {@link #put}.
+     */
+    public Object stamp(int userId) {
+        Object stamp = new Object();
+        computing.put(userId, stamp);
+        return stamp;
+    }
+
+    /**
+     * Сохранение рассчитанных рекомендаций.
+     * Если за время расчета записи пользователя сбрасывались, результат мог устареть и не сохраняется.
+     *
+     * @param userId  идентификатор пользователя
+     * @param filmIds идентификаторы рекомендованных фильмов
+     * @param stamp   метка, полученная из {@link #stamp} до начала расчета
+     */
+    public void put(int userId, List<Integer> filmIds, Object stamp) {
+        // под блокировкой кэша: сброс, снявший метку позже, удалит и сохраненную запись
+        synchronized (cache) {
+            if (!computing.remove(userId, stamp)) {
+                return;
+            }
+            cache.put(userId, new CachedRecommendation(List.copyOf(filmIds), System.nanoTime()));
+        }
+        dirtyUsers.remove(userId);
+    }
+
+    /**
+     * Учет добавления или удаления лайка. Вызывается на пути записи лайка, поэтому только ставит
+     * изменение в очередь; затронутые записи удаляет {@link #applyLikeChanges}.
+     *
+     * @param userId идентификатор пользователя, изменившего лайк
+     * @param filmId идентификатор фильма
+     */
+    public void invalidateLike(int userId, int filmId) {
+        likeChanges.add(new LikeChange(userId, filmId));
+    }
+
+    /**
+     * Применение накопленных изменений лайков к кэшу.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.cache.invalidation-interval:PT0.2S}")
+    public void applyLikeChanges() {
+        // повторные изменения одной пары применяются один раз
+        Set<LikeChange> changes = new LinkedHashSet<>();
+        LikeChange change;
+        while ((change = likeChanges.poll()) != null) {
+            changes.add(change);
+        }
+        changes.forEach(likeChange -> applyLikeChange(likeChange.userId(), likeChange.filmId()));
+    }
+
+    /**
+     * Сброс после добавления или удаления лайка.
+     * Затрагивает самого пользователя и всех, у кого есть общие с ним фильмы или кто лайкнул этот фильм:
+     * у них меняется пересечение с пользователем, а значит и набор соседей.
+     */
+    private void applyLikeChange(int userId, int filmId) {
+        int[] userFilms = filmLikeMatrix.filmsOf(userId);
+        int[] filmLikers = filmLikeMatrix.likersOf(filmId);
+
+        // метки снимаются до выбора записей: результат, сохраненный раньше, попадет в выборку, позже - не сохранится.
+        // Идущих расчетов немного, поэтому их метки проверяются напрямую
+        computing.keySet().removeIf(computingUserId -> computingUserId == userId
+                || Arrays.binarySearch(filmLikers, computingUserId) >= 0
+                || intersects(userFilms, filmLikeMatrix.filmsOf(computingUserId)));
+
+        // затронутых пользователей может быть намного больше, чем записей в кэше:
+        // тогда дешевле проверить каждую запись кэша, чем собирать всех затронутых
+        long affectedEstimate = 1 + filmLikers.length;
+        for (int likedFilmId : userFilms) {
+            affectedEstimate += filmLikeMatrix.likersOf(likedFilmId).length;
+        }
+        Collection<Integer> candidates;
+        if (cache.size() < affectedEstimate) {
+            candidates = cache.keysMatching((cachedUserId, cached) -> cachedUserId == userId
+                    || Arrays.binarySearch(filmLikers, cachedUserId) >= 0
+                    || intersects(userFilms, filmLikeMatrix.filmsOf(cachedUserId)), Integer.MAX_VALUE);
+        } else {
+            Set<Integer> affected = new HashSet<>();
+            affected.add(userId);
+            addAll(affected, filmLikers);
+            for (int likedFilmId : userFilms) {
+                addAll(affected, filmLikeMatrix.likersOf(likedFilmId));
+            }
+            candidates = affected;
+        }
+
+        int removed = 0;
+        for (Integer affectedUserId : candidates) {
+            if (cache.remove(affectedUserId) != null) {
+                dirtyUsers.add(affectedUserId);
+                removed++;
+            }
+        }
+        invalidations.add(removed);
+        log.debug("Лайк пользователя {} фильму {}: сброшено рекомендаций {}", userId, filmId, removed);
+    }
+
+    // Полный сброс (удаление фильма или пользователя) –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void invalidateAll() {
+        likeChanges.clear();
+        computing.clear();
+        invalidations.add(cache.size());
+        cache.clear();
+        dirtyUsers.clear();
+    }
+
+    /**
+     * Пользователи для фонового пересчета: сначала те, у кого изменились лайки соседей,
+     * затем записи старше {@code ttl} в порядке давности использования.
+     *
+     * @param limit максимальное количество пользователей
+     */
+    public List<Integer> refreshCandidates(int limit) {
+        List<Integer> result = new ArrayList<>(limit);
+        Iterator<Integer> iterator = dirtyUsers.iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        if (result.size() < limit) {
+            long now = System.nanoTime();
+            result.addAll(cache.keysMatching((userId, cached) -> isStale(cached, now), limit - result.size()));
+        }
+        return result;
+    }
+
+    // Учет фонового пересчета ––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void refreshed(int userId, List<Integer> filmIds, Object stamp) {
+        put(userId, filmIds, stamp);
+        refreshes.increment();
+    }
+
+    public Stats stats() {
+        long now = System.nanoTime();
+        List<Integer> stale = cache.keysMatching((userId, cached) -> isStale(cached, now), Integer.MAX_VALUE);
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return new Stats(
+                cache.size(),
+                cache.maxSize(),
+                hitCount,
+                missCount,
+                total == 0 ? 0 : (double) hitCount / total,
+                staleHits.sum(),
+                stale.size(),
+                dirtyUsers.size(),
+                likeChanges.size(),
+                invalidations.sum(),
+                refreshes.sum(),
+                cache.evictions());
+    }
+
+    private boolean isStale(CachedRecommendation cached, long now) {
+        return now - cached.computedAt() > ttlNanos;
+    }
+
+    private static void addAll(Set<Integer> target, int[] values) {
+        for (int value : values) {
+            target.add(value);
+        }
+    }
+
+    // Пересечение отсортированных массивов слиянием
+    private static boolean intersects(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                return true;
+            }
+            if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    private record CachedRecommendation(List<Integer> filmIds, long computedAt) {
+    }
+
+    private record LikeChange(int userId, int filmId) {
+    }
+
+    /**
+     * Показатели кэша рекомендаций.
+     *
+     * @param size           количество записей
+     * @param maxSize        максимальное количество записей
+     * @param hits           попадания
+     * @param misses         промахи
+     * @param hitRate        доля попаданий
+     * @param staleHits      попадания в записи старше ttl
+     * @param staleEntries   записи старше ttl в данный момент
+     * @param pendingRefresh сброшенные записи, ожидающие пересчета
+     * @param pendingLikes   изменения лайков, еще не примененные к кэшу
+     * @param invalidations  сброшенные записи
+     * @param refreshes      фоновые пересчеты
+     * @param evictions      вытесненные записи
+     */
+    public record Stats(int size, int maxSize, long hits, long misses, double hitRate, long staleHits,
+                        int staleEntries, int pendingRefresh, int pendingLikes, long invalidations, long refreshes,
+                        long evictions) {
+    }
+}
@@ -1,74 +1,149 @@
 package ru.yandex.practicum.filmorate.service;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
-import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
 
 import java.util.*;
 
 /**
  * Сервис для получения рекомендаций фильмов пользователю на основе
  * лайков других пользователей с похожими вкусами.
+ * <p>
+ * Соседи ищутся по матрице лайков в памяти: перебираются только пользователи, лайкнувшие
+ * хотя бы один фильм текущего пользователя. Мера сходства и количество соседей задаются
+ * параметрами {@code filmorate.recommendations.similarity} и {@code filmorate.recommendations.neighbours}.
+ * </p>
+ * Готовые результаты хранятся в {@link RecommendationCache} и пересчитываются по расписанию.
  */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class RecommendationService {
+    // Худший сосед - в голове очереди; при равенстве сходства предпочтение у большего пересечения и меньшего id
+    private static final Comparator<Neighbour> NEIGHBOUR_ORDER = Comparator.comparingDouble(Neighbour::similarity)
+            .thenComparingInt(Neighbour::common)
+            .thenComparing(Neighbour::userId, Comparator.reverseOrder());
+
     private final FilmService filmService;
-    private final UserDbStorage userStorage;
+    private final FilmLikeMatrix filmLikeMatrix;
+    private final RecommendationCache recommendationCache;
+    private final SimilarityMetric similarityMetric;
+    private final int neighboursLimit;
+    private final int refreshBatchSize;
+
+    public RecommendationService(FilmService filmService,
+                                 FilmLikeMatrix filmLikeMatrix,
+                                 RecommendationCache recommendationCache,
+                                 @Value("${filmorate.recommendations.similarity:OVERLAP}") SimilarityMetric similarityMetric,
+                                 @Value("${filmorate.recommendations.neighbours:1}") int neighboursLimit,
+                                 @Value("${filmorate.recommendations.cache.refresh-batch-size:200}") int refreshBatchSize) {
+        this.filmService = filmService;
+        this.filmLikeMatrix = filmLikeMatrix;
+        this.recommendationCache = recommendationCache;
+        this.similarityMetric = similarityMetric;
+        this.neighboursLimit = Math.max(1, neighboursLimit);
+        this.refreshBatchSize = refreshBatchSize;
+    }
 
     /**
      * Возвращает список рекомендованных фильмов для пользователя.
-     * Рекомендации формируются на основе пользователя, у которого
-     * максимальное пересечение лайков с текущим пользователем.
+     * Рекомендации формируются на основе пользователей, наиболее похожих на текущего по лайкам.
      * Из рекомендаций исключаются фильмы, которые уже лайкнул текущий пользователь.
      *
      * @param userId идентификатор пользователя, для которого нужны рекомендации
      * @return список рекомендованных FilmDto; пустой список, если похожих пользователей нет
      */
     public List<FilmDto> getRecommendations(Integer userId) {
-        Set<Integer> likedByUser = filmService.getLikedFilmsIds(userId);
+        List<Integer> filmIds = recommendationCache.get(userId).orElseGet(() -> {
+            Object stamp = recommendationCache.stamp(userId);
+            List<Integer> computed = recommendFilmIds(userId);
+            recommendationCache.put(userId, computed, stamp);
+            return computed;
+        });
+        return filmService.getFilmsByIds(filmIds);
+    }
 
-        Integer mostSimilarUserId = findMostSimilarUser(userId, likedByUser);
-        if (mostSimilarUserId == null) {
-            return Collections.emptyList();
+    /**
+     * Фоновый пересчет кэша: сначала пользователи, затронутые изменением лайков, затем устаревшие записи.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.cache.refresh-interval:PT30S}")
+    public void refreshCache() {
+        List<Integer> userIds = recommendationCache.refreshCandidates(refreshBatchSize);
+        for (Integer userId : userIds) {
+            Object stamp = recommendationCache.stamp(userId);
+            recommendationCache.refreshed(userId, recommendFilmIds(userId), stamp);
+        }
+        if (!userIds.isEmpty()) {
+            log.debug("Пересчитаны рекомендации пользователей: {}", userIds.size());
         }
-
-        return filmService.getLikedFilmsIds(mostSimilarUserId).stream()
-                .filter(filmId -> !likedByUser.contains(filmId))
-                .map(filmService::getFilmById)
-                .toList();
     }
 
     /**
-     * Находит идентификатор пользователя, у которого максимальное пересечение
-     * лайкнутых фильмов с заданным пользователем.
+     * Вычисляет идентификаторы рекомендованных фильмов.
+     * Каждый фильм соседа получает вес, равный сходству с этим соседом; веса суммируются.
      *
-     * @param userId      идентификатор пользователя, для которого ищем похожего
-     * @param likedByUser множество идентификаторов фильмов, лайкнутых пользователем
-     * @return идентификатор самого похожего пользователя, или null, если таких нет
+     * @param userId идентификатор пользователя
+     * @return id фильмов по убыванию веса
      */
-    private Integer findMostSimilarUser(Integer userId, Set<Integer> likedByUser) {
-        return userStorage.getAll().stream()
-                .map(User::getId)
-                .filter(id -> !id.equals(userId))
-                .max(Comparator.comparingInt(otherId ->
-                        intersectionSize(likedByUser, filmService.getLikedFilmsIds(otherId))
-                ))
-                .orElse(null);
+    public List<Integer> recommendFilmIds(int userId) {
+        int[] likedByUser = filmLikeMatrix.filmsOf(userId);
+        if (likedByUser.length == 0) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : findNeighbours(userId, likedByUser)) {
+            for (int filmId : filmLikeMatrix.filmsOf(neighbour.userId())) {
+                if (Arrays.binarySearch(likedByUser, filmId) < 0) {
+                    scores.merge(filmId, neighbour.similarity(), Double::sum);
+                }
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<Integer, Double>comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
     }
 
     /**
-     * Вычисляет размер пересечения двух множеств идентификаторов фильмов.
+     * Находит наиболее похожих пользователей.
+     * Пересечения считаются по столбцам матрицы для фильмов пользователя, поэтому
+     * пользователи без общих лайков не рассматриваются.
      *
-     * @param firstSet  первое множество идентификаторов
-     * @param secondSet второе множество идентификаторов
-     * @return количество общих элементов в двух множествах
+     * @param userId      идентификатор пользователя, для которого ищем похожих
+     * @param likedByUser отсортированный массив фильмов, лайкнутых пользователем
+     * @return соседи по убыванию сходства
      */
-    private int intersectionSize(Set<Integer> firstSet, Set<Integer> secondSet) {
-        Set<Integer> copy = new HashSet<>(firstSet);
-        copy.retainAll(secondSet);
-        return copy.size();
+    private List<Neighbour> findNeighbours(int userId, int[] likedByUser) {
+        Map<Integer, Integer> commonLikes = new HashMap<>();
+        for (int filmId : likedByUser) {
+            for (int otherId : filmLikeMatrix.likersOf(filmId)) {
+                if (otherId != userId) {
+                    commonLikes.merge(otherId, 1, Integer::sum);
+                }
+            }
+        }
+
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(neighboursLimit + 1, NEIGHBOUR_ORDER);
+        commonLikes.forEach((otherId, common) -> {
+            double similarity = similarityMetric.score(common, likedByUser.length, filmLikeMatrix.filmsOf(otherId).length);
+            best.offer(new Neighbour(otherId, common, similarity));
+            if (best.size() > neighboursLimit) {
+                best.poll();
+            }
+        });
+
+        List<Neighbour> neighbours = new ArrayList<>(best);
+        neighbours.sort(NEIGHBOUR_ORDER.reversed());
+        log.debug("Для пользователя {} найдено соседей: {} из {}", userId, neighbours.size(), commonLikes.size());
+        return neighbours;
+    }
+
+    private record Neighbour(int userId, int common, double similarity) {
     }
-}
\ No newline at end of file
+}
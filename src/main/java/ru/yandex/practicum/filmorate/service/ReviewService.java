@@ -11,10 +11,8 @@ import ru.yandex.practicum.filmorate.exeptions.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.dto.ReviewDtoMapper;
 import ru.yandex.practicum.filmorate.mapper.toEntity.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.model.UserFeedEvent;
-import ru.yandex.practicum.filmorate.repository.ReviewRatingStorage;
 import ru.yandex.practicum.filmorate.repository.ReviewStorage;
-import ru.yandex.practicum.filmorate.repository.UserFeedStorage;
+import ru.yandex.practicum.filmorate.repository.memory.ReviewRankingIndex;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,30 +22,35 @@ import java.util.stream.Collectors;
 @Service
 public class ReviewService {
     ReviewStorage reviewStorage;
-    ReviewRatingStorage reviewRatingStorage;
+    ReviewUsefulCounter reviewUsefulCounter;
     FilmService filmService;
     UserService userService;
-    UserFeedStorage userFeedStorage;
+    UserFeedService userFeedService;
+    ReviewRankingIndex reviewRankingIndex;
 
     /**
      * Конструктор ReviewService
      *
      * @param filmService         сервис фильмов
      * @param reviewStorage       сервис отзывов
-     * @param reviewRatingStorage сервис обработки рейтинга отзывов
+     * @param reviewUsefulCounter сервис обработки рейтинга отзывов
      * @param userService         сервис пользователей
+     * @param userFeedService     сервис ленты событий
+     * @param reviewRankingIndex  рейтинг отзывов по полезности
      */
     @Autowired
     public ReviewService(ReviewStorage reviewStorage,
-                         ReviewRatingStorage reviewRatingStorage,
+                         ReviewUsefulCounter reviewUsefulCounter,
                          FilmService filmService,
                          UserService userService,
-                         UserFeedStorage userFeedStorage) {
+                         UserFeedService userFeedService,
+                         ReviewRankingIndex reviewRankingIndex) {
         this.reviewStorage = reviewStorage;
-        this.reviewRatingStorage = reviewRatingStorage;
+        this.reviewUsefulCounter = reviewUsefulCounter;
         this.filmService = filmService;
         this.userService = userService;
-        this.userFeedStorage = userFeedStorage;
+        this.userFeedService = userFeedService;
+        this.reviewRankingIndex = reviewRankingIndex;
     }
 
     /**
@@ -70,15 +73,9 @@ public class ReviewService {
 
         Review request = ReviewMapper.mapToReview(reviewDto);
         Review review = reviewStorage.save(request);
+        reviewRankingIndex.put(review.getReviewId(), review.getFilmId(), review.getUseful());
 
-        UserFeedEvent event = UserFeedEvent.builder()
-                .timestamp(System.currentTimeMillis())
-                .userId(review.getUserId())
-                .eventType("REVIEW")
-                .operation("ADD")
-                .entityId(review.getReviewId())
-                .build();
-        userFeedStorage.addEvent(event);
+        userFeedService.createEvent(review.getUserId(), "REVIEW", "ADD", review.getReviewId());
 
         return ReviewDtoMapper.mapToDto(review);
     }
@@ -93,14 +90,7 @@ public class ReviewService {
         Review request = ReviewMapper.mapToReview(reviewDto);
         Review review = reviewStorage.update(request);
 
-        UserFeedEvent event = UserFeedEvent.builder()
-                .timestamp(System.currentTimeMillis())
-                .userId(review.getUserId())
-                .eventType("REVIEW")
-                .operation("UPDATE")
-                .entityId(review.getReviewId())
-                .build();
-        userFeedStorage.addEvent(event);
+        userFeedService.createEvent(review.getUserId(), "REVIEW", "UPDATE", review.getReviewId());
 
         return ReviewDtoMapper.mapToDto(review);
     }
@@ -114,16 +104,11 @@ public class ReviewService {
         checkReviewExist(id);
         int userId = reviewStorage.getUserIdByReviewId(id);
 
-        UserFeedEvent event = UserFeedEvent.builder()
-                .timestamp(System.currentTimeMillis())
-                .userId(userId)
-                .eventType("REVIEW")
-                .operation("REMOVE")
-                .entityId(id)
-                .build();
-        userFeedStorage.addEvent(event);
+        userFeedService.createEvent(userId, "REVIEW", "REMOVE", id);
 
         reviewStorage.removeById(id);
+        reviewRankingIndex.remove(id);
+        reviewUsefulCounter.discard(id);
     }
 
     /**
@@ -137,19 +122,21 @@ public class ReviewService {
     }
 
     /**
-     * Получение списка отзывов
+     * Получение списка отзывов по убыванию полезности
      *
-     * @param filmId id фильма
-     * @param count  количество выводимых значений
+     * @param filmId      id фильма
+     * @param count       количество выводимых значений
+     * @param afterUseful полезность последнего отзыва предыдущей страницы
+     * @param afterId     id последнего отзыва предыдущей страницы
      */
-    public List<ReviewDto> getReviews(Integer filmId, Integer count) {
-        if (filmId != null) {
-            List<Review> response = reviewStorage.getReviewsById(filmId, count);
-            return response.stream().map(ReviewDtoMapper::mapToDto).collect(Collectors.toList());
-        } else {
-            List<Review> getAllList = reviewStorage.getAll(count);
-            return getAllList.stream().map(ReviewDtoMapper::mapToDto).collect(Collectors.toList());
+    public List<ReviewDto> getReviews(Integer filmId, Integer count, Integer afterUseful, Integer afterId) {
+        if ((afterUseful == null) != (afterId == null)) {
+            throw new ValidationException("Параметры afterUseful и afterId задаются вместе");
         }
+        List<Integer> ids = reviewRankingIndex.page(filmId, afterUseful, afterId, count);
+        return reviewUsefulCounter.withPending(() -> reviewStorage.getByIds(ids)).stream()
+                .map(ReviewDtoMapper::mapToDto)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -198,49 +185,36 @@ public class ReviewService {
     }
 
     /**
-     * Обновление рейтинга полезности отзыва
+     * Обновление рейтинга полезности отзыва в памяти после изменения в БД
      */
-    private void updateReviewUseful(Integer reviewId, boolean isLike, boolean isAdd) {
-        int delta = isLike ? 1 : -1; // лайк = +1, дизлайк = -1
-        if (!isAdd) {
-            delta *= -1; // если удаляем оценку, меняем знак
-        }
-        reviewStorage.updateUseful(reviewId, delta); // атомарное обновление в БД
+    private void updateReviewUseful(Integer reviewId, int delta) {
+        reviewRankingIndex.adjust(reviewId, delta);
     }
 
     /**
-     * Обработка оценки отзыва (лайк/дизлайк)
+     * Обработка оценки отзыва (лайк/дизлайк) через {@link ReviewUsefulCounter}: оценка и полезность отзыва
+     * меняются в БД одной транзакцией либо полезность копится в памяти до сброса в БД.
+     * Существование отзыва и пользователя проверяется по данным в памяти.
      *
      * @param reviewId id отзыва
      * @param userId   id пользователя
-     * @param isLike   true - лайк / false - дизлайк
+     * @param isLike   true - лайк / false - дизлайк / null - снять оценку
      */
-    private void processReviewRating(Integer reviewId, Integer userId, boolean isLike) {
-        Review review = checkReviewExist(reviewId);
-        userService.getUserById(userId);
-
-        Optional<Boolean> existingRating = reviewRatingStorage.getRating(reviewId, userId);
+    private void processReviewRating(Integer reviewId, Integer userId, Boolean isLike) {
+        if (!reviewRankingIndex.contains(reviewId)) {
+            throw new NotFoundException(String.format("Отзыв с id %d не найден", reviewId));
+        }
+        if (!userService.existsById(userId)) {
+            throw new NotFoundException("User not found");
+        }
 
-        if (existingRating.isPresent()) {
-            boolean oldLike = existingRating.get();
-            if (oldLike == isLike) {
-                return; // оценка не изменилась
-            }
-            // Удаляем старую оценку (-1 или +1)
-            updateReviewUseful(reviewId, oldLike, false);
-            // Добавляем новую оценку (+1 или -1)
-            updateReviewUseful(reviewId, isLike, true);
-            // Обновляем оценку в БД
-            reviewRatingStorage.updateRating(reviewId, userId, isLike);
-        } else {
-            // Просто добавляем новую оценку
-            reviewRatingStorage.addRating(reviewId, userId, isLike);
-            updateReviewUseful(reviewId, isLike, true);
+        int delta = reviewUsefulCounter.vote(reviewId, userId, isLike);
+        if (delta == 0) {
+            return; // оценка не изменилась
         }
-        log.info("{} {} к отзыву {}",
-                isLike ? "Лайк" : "Дизлайк",
-                existingRating.isPresent() ? "изменен" : "добавлен",
-                reviewId);
+        updateReviewUseful(reviewId, delta);
+        log.info("Оценка отзыва {} пользователем {}: {}, изменение полезности {}",
+                reviewId, userId, isLike == null ? "удалена" : isLike ? "лайк" : "дизлайк", delta);
     }
 
     /**
@@ -288,15 +262,6 @@ public class ReviewService {
      * @param userId   id пользователя
      */
     private void deleteManager(Integer reviewId, Integer userId) {
-        Review review = checkReviewExist(reviewId);
-        userService.getUserById(userId);
-
-        Optional<Boolean> existingRating = reviewRatingStorage.getRating(reviewId, userId);
-        if (existingRating.isEmpty()) {
-            return;
-        }
-        reviewRatingStorage.deleteRating(reviewId, userId);
-        updateReviewUseful(reviewId, existingRating.get(), false);
-        log.info("Удалена оценка отзыва {} пользователем {}", reviewId, userId);
+        processReviewRating(reviewId, userId, null);
     }
-}
\ No newline at end of file
+}
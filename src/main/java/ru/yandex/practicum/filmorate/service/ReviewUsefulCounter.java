@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.repository.ReviewRatingStorage;
+import ru.yandex.practicum.filmorate.repository.ReviewStorage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись полезности отзывов.
+ * <p>
+ * Включается параметром {@code filmorate.reviews.useful-counter.enabled}; в выключенном состоянии оценка
+ * и полезность отзыва меняются одной транзакцией под блокировкой строки отзыва
+ * ({@link ReviewRatingStorage#vote}). Во включенном - в базу сразу пишется только строка оценки,
+ * а изменение полезности копится в счетчике {@link LongAdder} отзыва: голоса за популярный отзыв
+ * не ждут друг друга на его строке. Оценки одного пользователя одному отзыву выполняются по очереди
+ * под блокировкой полосы, выбранной по паре (отзыв, пользователь).
+ * </p>
+ * Счетчики записываются в {@code reviews.useful} пачкой раз в {@code flush-interval}. Чтение отзывов
+ * через {@link #withPending} прибавляет к значению из базы накопленные изменения и не пересекается
+ * со сбросом, поэтому ответ включает все завершенные оценки. Отдельный отзыв берет полезность
+ * из {@code ReviewRankingIndex}, где изменения учтены сразу.
+ */
+@Slf4j
+@Component
+public class ReviewUsefulCounter {
+    private final ReviewStorage reviewStorage;
+    private final ReviewRatingStorage reviewRatingStorage;
+    private final boolean enabled;
+    private final ReentrantLock[] stripes;
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // Изменение счетчиков и чтение отзывов с их прибавлением - под блокировкой чтения,
+    // сброс счетчиков в базу - под блокировкой записи
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private volatile long lastFlushNanos = System.nanoTime();
+
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+
+    public ReviewUsefulCounter(ReviewStorage reviewStorage, ReviewRatingStorage reviewRatingStorage,
+                               @Value("${filmorate.reviews.useful-counter.enabled:false}") boolean enabled,
+                               @Value("${filmorate.reviews.useful-counter.stripes:64}") int stripes) {
+        this.reviewStorage = reviewStorage;
+        this.reviewRatingStorage = reviewRatingStorage;
+        this.enabled = enabled;
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Оценка отзыва пользователем.
+     *
+     * @param isLike true - лайк / false - дизлайк / null - снять оценку
+     * @return изменение полезности отзыва
+     */
+    public int vote(int reviewId, int userId, Boolean isLike) {
+        if (!enabled) {
+            return reviewRatingStorage.vote(reviewId, userId, isLike);
+        }
+        long key = ((long) reviewId << 32) | (userId & 0xFFFFFFFFL);
+        ReentrantLock stripe = stripes[Math.floorMod(Long.hashCode(key) * 0x9E3779B9, stripes.length)];
+        stripe.lock();
+        try {
+            int delta = reviewRatingStorage.replaceRating(reviewId, userId, isLike);
+            if (delta != 0) {
+                flushLock.readLock().lock();
+                try {
+                    pending.computeIfAbsent(reviewId, k -> new LongAdder()).add(delta);
+                } finally {
+                    flushLock.readLock().unlock();
+                }
+                buffered.increment();
+            }
+            return delta;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Загрузка отзывов с учетом накопленных изменений полезности.
+     *
+     * @param loader чтение отзывов из базы
+     */
+    public List<Review> withPending(Supplier<List<Review>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        flushLock.readLock().lock();
+        try {
+            List<Review> reviews = loader.get();
+            for (Review review : reviews) {
+                LongAdder delta = pending.get(review.getReviewId());
+                if (delta != null) {
+                    review.setUseful(review.getUseful() + (int) delta.sum());
+                }
+            }
+            return reviews;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Сброс накопленного для удаленного отзыва –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void discard(int reviewId) {
+        pending.remove(reviewId);
+    }
+
+    /**
+     * Запись накопленных изменений полезности в базу. Вызывается по расписанию и при остановке приложения.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.reviews.useful-counter.flush-interval:PT0.5S}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.writeLock().lock();
+        try {
+            lastFlushNanos = System.nanoTime();
+            Map<Integer, Integer> deltas = drain();
+            if (deltas.isEmpty()) {
+                return;
+            }
+            try {
+                reviewStorage.updateUseful(deltas);
+                flushedRows.add(deltas.size());
+                flushes.increment();
+            } catch (RuntimeException e) {
+                // изменения возвращаются в счетчики и записываются следующим сбросом
+                failedFlushes.increment();
+                deltas.forEach((reviewId, delta) -> pending.computeIfAbsent(reviewId, k -> new LongAdder()).add(delta));
+                log.warn("Полезность {} отзывов не записана: {}", deltas.size(), e.getMessage());
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, pending.size(), buffered.sum(), flushes.sum(), flushedRows.sum(),
+                failedFlushes.sum(), Duration.ofNanos(System.nanoTime() - lastFlushNanos).toMillis());
+    }
+
+    // Изъятие накопленных изменений под блокировкой записи: счетчики в это время не меняются
+    private Map<Integer, Integer> drain() {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        pending.forEach((reviewId, counter) -> {
+            int delta = (int) counter.sum();
+            if (delta != 0) {
+                deltas.put(reviewId, delta);
+            }
+        });
+        pending.clear();
+        return deltas;
+    }
+
+    /**
+     * Показатели отложенной записи полезности отзывов.
+     *
+     * @param enabled        включена ли отложенная запись
+     * @param pendingReviews отзывы с накопленными изменениями
+     * @param buffered       оценки, изменившие счетчики
+     * @param flushes        сбросы счетчиков в базу
+     * @param flushedRows    строки отзывов, обновленные при сбросе
+     * @param failedFlushes  сбросы, завершившиеся ошибкой
+     * @param lagMillis      время с последнего сброса
+     */
+    public record Stats(boolean enabled, int pendingReviews, long buffered, long flushes, long flushedRows,
+                        long failedFlushes, long lagMillis) {
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.service;
+
+/**
+ * Мера сходства двух пользователей по множествам лайкнутых фильмов.
+ */
+public enum SimilarityMetric {
+    /**
+     * Количество общих фильмов.
+     */
+    OVERLAP {
+        @Override
+        public double score(int common, int firstSize, int secondSize) {
+            return common;
+        }
+    },
+    /**
+     * Коэффициент Жаккара: |A ∩ B| / |A ∪ B|.
+     */
+    JACCARD {
+        @Override
+        public double score(int common, int firstSize, int secondSize) {
+            int union = firstSize + secondSize - common;
+            return union == 0 ? 0 : (double) common / union;
+        }
+    },
+    /**
+     * Косинусная мера для бинарных векторов: |A ∩ B| / sqrt(|A| * |B|).
+     */
+    COSINE {
+        @Override
+        public double score(int common, int firstSize, int secondSize) {
+            return firstSize == 0 || secondSize == 0 ? 0 : common / Math.sqrt((double) firstSize * secondSize);
+        }
+    };
+
+    /**
+     * @param common     количество общих фильмов
+     * @param firstSize  количество лайков первого пользователя
+     * @param secondSize количество лайков второго пользователя
+     * @return сходство, чем больше - тем ближе пользователи
+     */
+    public abstract double score(int common, int firstSize, int secondSize);
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.EventDto;
 import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.dto.EventDtoMapper;
 import ru.yandex.practicum.filmorate.model.UserFeedEvent;
 import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
@@ -15,10 +16,16 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class UserFeedService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
     private final UserFeedDbStorage userFeedRepository;
     private final UserDbStorage userStorage;
+    private final FeedEventPipeline feedEventPipeline;
+    private final UserTimelineService userTimelineService;
 
+    /**
+     * Публикация события в ленту. Событие записывается в базу асинхронно, см. {@link FeedEventPipeline}.
+     */
     public void createEvent(Integer userId, String eventType, String operation, int entityId) {
         UserFeedEvent event = UserFeedEvent.builder()
                 .timestamp(Instant.now().toEpochMilli())
@@ -28,14 +35,65 @@ public class UserFeedService {
                 .entityId(entityId)
                 .build();
 
-        userFeedRepository.addEvent(event);
+        feedEventPipeline.publish(event);
     }
 
     public List<EventDto> getFeedByUserId(int userId) {
+        checkUserExists(userId);
+        feedEventPipeline.awaitWritten();
+        List<UserFeedEvent> userFeed = userFeedRepository.getFeedByUserId(userId);
+        return userFeed.stream().map(EventDtoMapper::mapToEventDto).toList();
+    }
+
+    /**
+     * Страница ленты пользователя в порядке времени событий.
+     * Для следующей страницы передаются время и id последнего полученного события в {@code since} и {@code after}.
+     *
+     * @param since время в мс, с которого (включительно) выдаются события
+     * @param until время в мс, до которого (не включительно) выдаются события
+     * @param after id события, после которого продолжается выдача событий с временем {@code since};
+     *              задается только вместе с {@code since}
+     * @param limit размер страницы
+     */
+    public List<EventDto> getFeedPage(int userId, Long since, Long until, Long after, Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным");
+        }
+        if (after != null && since == null) {
+            throw new ValidationException("Параметр after задается вместе с since");
+        }
+        checkUserExists(userId);
+        feedEventPipeline.awaitWritten();
+        List<UserFeedEvent> page = userFeedRepository.getFeedPage(userId,
+                since != null ? since : Long.MIN_VALUE,
+                until != null ? until : Long.MAX_VALUE,
+                after != null ? after : 0,
+                pageSize);
+        return page.stream().map(EventDtoMapper::mapToEventDto).toList();
+    }
+
+    /**
+     * Страница ленты событий друзей пользователя, от новых к старым, см. {@link UserTimelineService}.
+     *
+     * @param before id события, до которого выдаются события; для следующей страницы - id последнего полученного
+     * @param limit  размер страницы
+     */
+    public List<EventDto> getTimeline(int userId, Long before, Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным");
+        }
+        checkUserExists(userId);
+        feedEventPipeline.awaitWritten();
+        return userTimelineService.getTimeline(userId, before, pageSize).stream()
+                .map(EventDtoMapper::mapToEventDto)
+                .toList();
+    }
+
+    private void checkUserExists(int userId) {
         if (!userStorage.existsById(userId)) {
             throw new NotFoundException("Пользователь с ID " + userId + " не найден.");
         }
-        List<UserFeedEvent> userFeed = userFeedRepository.getFeedByUserId(userId);
-        return userFeed.stream().map(EventDtoMapper::mapToEventDto).toList();
     }
-}
\ No newline at end of file
+}
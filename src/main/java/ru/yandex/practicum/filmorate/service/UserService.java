@@ -4,6 +4,7 @@ import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dto.BulkImportResultDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.exeptions.FriendshipException;
 import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
@@ -14,28 +15,84 @@ import ru.yandex.practicum.filmorate.mapper.toEntity.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @AllArgsConstructor
 @Service
 @Slf4j
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final UserDbStorage userStorage;
     private final UserFeedService userFeedService;
+    private final RecommendationCache recommendationCache;
+    private final BulkImporter bulkImporter;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final UserTimelineService userTimelineService;
+    private final FriendSuggestionService friendSuggestionService;
 
     public List<UserDto> getAll() {
-        log.info("Отправлен список всех пользователей, size:{}", userStorage.getAll().size());
         List<User> users = userStorage.getAll();
+        log.info("Отправлен список всех пользователей, size:{}", users.size());
+        return users.stream().map(UserDtoMapper::mapToUserDto).toList();
+    }
+
+    /**
+     * Страница пользователей по возрастанию id.
+     *
+     * @param after id последнего пользователя предыдущей страницы; {@code null} - с начала
+     * @param limit размер страницы; {@code null} - {@value #DEFAULT_PAGE_SIZE}
+     */
+    public List<UserDto> getPage(Integer after, Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0) {
+            throw new ValidationException("Параметр limit должен быть положительным");
+        }
+        List<User> users = userStorage.getPage(after, pageSize);
+        log.info("Отправлена страница пользователей после id: {}, size: {}", after, users.size());
         return users.stream().map(UserDtoMapper::mapToUserDto).toList();
     }
 
+    /**
+     * Передает всех пользователей по одному, не собирая их в список.
+     *
+     * @param consumer получатель пользователей
+     */
+    public void streamAll(Consumer<UserDto> consumer) {
+        userStorage.streamAll(user -> consumer.accept(UserDtoMapper.mapToUserDto(user)));
+    }
+
     public UserDto getUserById(Integer id) {
         User user = userStorage.getUserById(id)
                 .orElseThrow(() -> new NotFoundException("User not found"));
         return UserDtoMapper.mapToUserDto(user);
     }
 
+    // Проверка существования по реестру id, без запроса к базе ––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public boolean existsById(Integer id) {
+        return userStorage.existsById(id);
+    }
+
+    /**
+     * Импорт пользователей из потока NDJSON. Каждая запись проверяется отдельно,
+     * ошибочные записи пропускаются и попадают в отчет.
+     *
+     * @param in тело запроса, по одному пользователю на строку
+     */
+    public BulkImportResultDto importUsers(InputStream in) {
+        return bulkImporter.importNdjson(in, UserDto.class, userDto -> {
+            User user = UserMapper.mapToUser(userDto);
+            userStorage.validateRequestUser(user);
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+            return user;
+        }, userStorage::addUsers);
+    }
+
     public UserDto addUser(UserDto user) {
         if (user.getLogin().contains(" ")) {
             throw new ValidationException("Validation Exception");
@@ -61,6 +118,7 @@ public class UserService {
     public void addFriend(Integer firstId, Integer secondId) {
         userStorage.addFriend(firstId, secondId)
                 .orElseThrow(() -> new FriendshipException("Ошибка при добавлении в друзья"));
+        friendSuggestionService.invalidateFriendship(firstId);
         userFeedService.createEvent(firstId, "FRIEND", "ADD", secondId);
         log.info("Добавлена дружба между пользователями с id {} и {}", firstId, secondId);
     }
@@ -68,6 +126,7 @@ public class UserService {
     public void removeFriend(Integer firstId, Integer secondId) {
         userStorage.removeFriend(firstId, secondId)
                 .orElseThrow(() -> new FriendshipException("Ошибка при удалении друзей"));
+        friendSuggestionService.invalidateFriendship(firstId);
         userFeedService.createEvent(firstId, "FRIEND", "REMOVE", secondId);
         log.info("Дружба удалена между пользователями с id {} и {}", firstId, secondId);
     }
@@ -94,7 +153,11 @@ public class UserService {
         if (!userStorage.existsById(id)) {
             throw new NotFoundException("Пользователь с идентификатором не найден: " + id);
         }
+        likeWriteBuffer.flush();
         userStorage.delete(id);
+        userTimelineService.evict(id);
+        recommendationCache.invalidateAll();
+        friendSuggestionService.invalidateAll();
         log.info("Удален пользователя с помощью идентификатора: {}", id);
     }
 }
\ No newline at end of file
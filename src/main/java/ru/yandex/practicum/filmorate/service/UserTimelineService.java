@@ -0,0 +1,274 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserFeedEvent;
+import ru.yandex.practicum.filmorate.repository.UserTimelineStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
+import ru.yandex.practicum.filmorate.repository.memory.LruCache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * Лента событий друзей (fan-out on write).
+ * <p>
+ * Каждое записанное событие сразу добавляется в ленты всех пользователей, у которых автор в друзьях:
+ * строкой в {@code user_timeline} и в ограниченную очередь в памяти, если лента пользователя загружена.
+ * В ленте хранятся не больше {@code capacity} последних событий: после каждой раскладки более ранние строки
+ * удаляются из базы у всех получивших события, независимо от того, загружена ли их лента в память.
+ * Подписчики и друзья берутся из {@link FriendshipGraph}, поэтому чтение страницы ленты не обращается
+ * к {@code user_friends} x {@code user_feed} и стоит O(размер страницы).
+ * </p>
+ * Авторы, у которых больше {@code celebrity-threshold} подписчиков, в ленты не раскладываются:
+ * их последние события дочитываются при запросе ленты (fan-out on read) по индексу (user_id, event_id).
+ * Когда подписчиков становится меньше, события автора снова раскладываются по лентам, а события,
+ * записанные до этого, продолжают дочитываться при запросе.
+ * Ленты показывают события только текущих друзей: события бывших друзей отбрасываются при чтении.
+ * Новый друг добавляет в ленту только свои последующие события. События, перенесенные в архив,
+ * удаляются и из лент в памяти.
+ */
+@Slf4j
+@Component
+public class UserTimelineService {
+    private final UserTimelineStorage timelineStorage;
+    private final FriendshipGraph friendshipGraph;
+    private final int capacity;
+    private final int celebrityThreshold;
+    private final LruCache<Integer, Timeline> timelines;
+
+    // Автор, чьи события дочитываются при запросе ленты - id первого события, разложенного по лентам после того,
+    // как автор перестал быть популярным; события до него дочитываются. Long.MAX_VALUE - автор популярен сейчас
+    private final Map<Integer, Long> celebrities = new ConcurrentHashMap<>();
+
+    // Раскладка событий по лентам и сохранение загруженной ленты в кэш выполняются под этой блокировкой.
+    // Загрузка ленты отмечается своей меткой, раскладка в ленту снимает метку ее владельца: лента,
+    // в которую раскладывались события во время загрузки, в кэш не попадает. Загрузки других лент не отменяются
+    private final Object lock = new Object();
+    private final Map<Integer, Object> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder fannedOut = new LongAdder();
+    private final LongAdder celebrityEvents = new LongAdder();
+    private final LongAdder celebrityReads = new LongAdder();
+
+    public UserTimelineService(UserTimelineStorage timelineStorage, FriendshipGraph friendshipGraph,
+                               @Value("${filmorate.feed.timeline.capacity:200}") int capacity,
+                               @Value("${filmorate.feed.timeline.cache-size:10000}") int cacheSize,
+                               @Value("${filmorate.feed.timeline.celebrity-threshold:1000}") int celebrityThreshold) {
+        this.timelineStorage = timelineStorage;
+        this.friendshipGraph = friendshipGraph;
+        this.capacity = capacity;
+        this.celebrityThreshold = celebrityThreshold;
+        this.timelines = new LruCache<>(cacheSize);
+    }
+
+    // Загрузка популярных авторов при запуске –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    @PostConstruct
+    public void loadCelebrities() {
+        friendshipGraph.usersWithFollowersOver(celebrityThreshold)
+                .forEach(authorId -> celebrities.put(authorId, Long.MAX_VALUE));
+        log.info("Авторов с лентой по запросу: {}", celebrities.size());
+    }
+
+    /**
+     * Раскладка записанных событий по лентам подписчиков. Вызывается писателем {@link FeedEventPipeline}
+     * в порядке записи событий, поэтому события в лентах идут по возрастанию id.
+     */
+    public void fanOut(List<UserFeedEvent> events) {
+        // подписчики фиксируются на время раскладки пачки, чтобы в базу и в память попали одни и те же ленты
+        Map<Integer, int[]> followersByAuthor = new HashMap<>();
+        List<UserFeedEvent> delivered = new ArrayList<>();
+        List<UserTimelineStorage.Entry> entries = new ArrayList<>();
+        Set<Integer> touched = new HashSet<>();
+        for (UserFeedEvent event : events) {
+            int[] followers = followersByAuthor.computeIfAbsent(event.getUserId(), friendshipGraph::followersOf);
+            if (followers.length > celebrityThreshold) {
+                celebrities.put(event.getUserId(), Long.MAX_VALUE);
+                celebrityEvents.increment();
+                continue;
+            }
+            // более ранние события автора, ставшего обычным, остались только в user_feed
+            celebrities.computeIfPresent(event.getUserId(),
+                    (authorId, cutoff) -> cutoff == Long.MAX_VALUE ? event.getEventId() : cutoff);
+            delivered.add(event);
+            for (int followerId : followers) {
+                entries.add(new UserTimelineStorage.Entry(followerId, event.getEventId()));
+                touched.add(followerId);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        timelineStorage.addEntries(entries);
+        timelineStorage.trimToCapacity(touched, capacity);
+        fannedOut.add(entries.size());
+
+        synchronized (lock) {
+            for (UserFeedEvent event : delivered) {
+                for (int followerId : followersByAuthor.get(event.getUserId())) {
+                    Timeline timeline = timelines.get(followerId);
+                    if (timeline == null) {
+                        loading.remove(followerId);
+                        continue;
+                    }
+                    timeline.push(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Страница ленты друзей, от новых событий к старым.
+     *
+     * @param before id события, до которого (не включительно) выдаются события; null - с последнего
+     * @param limit  размер страницы
+     */
+    public List<UserFeedEvent> getTimeline(int userId, Long before, int limit) {
+        long cursor = before != null ? before : Long.MAX_VALUE;
+        int[] friends = friendshipGraph.friendsOf(userId);
+
+        List<UserFeedEvent> cached = load(userId).page(cursor, limit, id -> Arrays.binarySearch(friends, id) >= 0);
+        List<UserFeedEvent> page = new ArrayList<>(cached);
+        boolean readCelebrities = false;
+        for (int friendId : friends) {
+            Long cutoff = celebrities.get(friendId);
+            if (cutoff == null) {
+                continue;
+            }
+            long bound = Math.min(cursor, cutoff);
+            if (cached.size() == limit && cached.getLast().getEventId() > bound) {
+                // все недоразложенные события автора старше полной страницы
+                continue;
+            }
+            celebrityReads.increment();
+            readCelebrities = true;
+            page.addAll(timelineStorage.getRecentEvents(friendId, bound, limit));
+        }
+        if (!readCelebrities) {
+            return page;
+        }
+        // события автора, ставшего популярным или переставшего им быть, могут быть и в ленте, и в выборке по запросу
+        Map<Long, UserFeedEvent> merged = new TreeMap<>(Comparator.reverseOrder());
+        page.forEach(event -> merged.putIfAbsent(event.getEventId(), event));
+        return merged.values().stream().limit(limit).toList();
+    }
+
+    // Удаление ленты удаленного пользователя –––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––––
+    public void evict(int userId) {
+        loading.remove(userId);
+        timelines.remove(userId);
+        celebrities.remove(userId);
+    }
+
+    /**
+     * Удаление из лент в памяти событий, перенесенных в архив. Строки {@code user_timeline} удаляются
+     * вместе с событиями каскадно. Вызывается {@link FeedRetentionJob} после переноса.
+     *
+     * @param before время в мс, события раньше которого перенесены в архив
+     */
+    public void archived(long before) {
+        synchronized (lock) {
+            // ленты, загружаемые сейчас, могли прочитать перенесенные события
+            loading.clear();
+        }
+        List<Integer> affected = timelines.keysMatching((id, timeline) -> timeline.hasEventsBefore(before),
+                Integer.MAX_VALUE);
+        for (Integer userId : affected) {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) {
+                timeline.dropBefore(before);
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(timelines.size(), timelines.maxSize(), capacity, loads.sum(), fannedOut.sum(),
+                celebrities.size(), celebrityEvents.sum(), celebrityReads.sum());
+    }
+
+    private Timeline load(int userId) {
+        Timeline cached = timelines.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        Object stamp = new Object();
+        loading.put(userId, stamp);
+        List<UserFeedEvent> events;
+        try {
+            events = timelineStorage.getTimeline(userId, capacity);
+        } catch (RuntimeException e) {
+            loading.remove(userId, stamp);
+            throw e;
+        }
+        loads.increment();
+        Timeline timeline = new Timeline(events);
+        synchronized (lock) {
+            if (loading.remove(userId, stamp)) {
+                timelines.put(userId, timeline);
+            }
+        }
+        return timeline;
+    }
+
+    // Лента пользователя в памяти: последние события, от новых к старым
+    private class Timeline {
+        private final ArrayDeque<UserFeedEvent> events;
+
+        Timeline(List<UserFeedEvent> loaded) {
+            this.events = new ArrayDeque<>(loaded);
+        }
+
+        synchronized void push(UserFeedEvent event) {
+            if (!events.isEmpty() && events.peekFirst().getEventId() >= event.getEventId()) {
+                // лента загружена из базы уже после записи события
+                return;
+            }
+            events.addFirst(event);
+            if (events.size() > capacity) {
+                events.pollLast();
+            }
+        }
+
+        synchronized boolean hasEventsBefore(long timestamp) {
+            return events.stream().anyMatch(event -> event.getTimestamp() < timestamp);
+        }
+
+        synchronized void dropBefore(long timestamp) {
+            events.removeIf(event -> event.getTimestamp() < timestamp);
+        }
+
+        synchronized List<UserFeedEvent> page(long before, int limit, IntPredicate visible) {
+            List<UserFeedEvent> page = new ArrayList<>(limit);
+            for (UserFeedEvent event : events) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (event.getEventId() < before && visible.test(event.getUserId())) {
+                    page.add(event);
+                }
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Показатели лент друзей.
+     *
+     * @param cached          ленты, загруженные в память
+     * @param maxCached       максимальное количество лент в памяти
+     * @param capacity        максимальное количество событий в ленте
+     * @param loads           загрузки лент из базы
+     * @param fannedOut       события, разложенные по лентам (по одному на подписчика)
+     * @param celebrities     авторы, чьи события читаются при запросе ленты
+     * @param celebrityEvents события таких авторов, не разложенные по лентам
+     * @param celebrityReads  дочитывания событий таких авторов при запросе ленты
+     */
+    public record Stats(int cached, int maxCached, int capacity, long loads, long fannedOut, int celebrities,
+                        long celebrityEvents, long celebrityReads) {
+    }
+}
@@ -35,10 +35,14 @@ CREATE TABLE IF NOT EXISTS films
     release_date  DATE,
     duration      INT          NOT NULL,
     mpa_rating_id INT REFERENCES mpa_rating (id),
+    likes_count   INT DEFAULT 0 NOT NULL,
     CONSTRAINT valid_release_date CHECK (release_date >= '1950-12-28'), -- дата первого фильма в истории
     CONSTRAINT valid_duration CHECK (duration > 0)
 );
 
+-- Счетчик лайков для баз, созданных до его появления
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INT DEFAULT 0 NOT NULL;
+
 -- Создание таблицы film_genres
 CREATE TABLE IF NOT EXISTS film_genres
 (
@@ -94,6 +98,24 @@ CREATE TABLE IF NOT EXISTS user_feed (
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+CREATE TABLE IF NOT EXISTS user_feed_archive (
+    event_id BIGINT PRIMARY KEY,
+    timestamp BIGINT NOT NULL,
+    user_id INT NOT NULL,
+    event_type VARCHAR(10) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    entity_id INT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS user_timeline (
+    user_id INT NOT NULL,
+    event_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, event_id),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (event_id) REFERENCES user_feed(event_id) ON DELETE CASCADE
+);
+
 CREATE TABLE IF NOT EXISTS directors (
      id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
      name VARCHAR(100) NOT NULL
@@ -106,4 +128,13 @@ CREATE TABLE IF NOT EXISTS film_directors (
     );
 
 CREATE INDEX IF NOT EXISTS idx_film_directors_director ON film_directors(director_id);
-CREATE INDEX IF NOT EXISTS idx_film_directors_film ON film_directors(film_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_film_directors_film ON film_directors(film_id);
+CREATE INDEX IF NOT EXISTS idx_film_likes_film ON film_likes(film_id);
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films(likes_count DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_user_feed_user_time ON user_feed(user_id, timestamp, event_id);
+CREATE INDEX IF NOT EXISTS idx_user_feed_time ON user_feed(timestamp);
+CREATE INDEX IF NOT EXISTS idx_user_feed_archive_user_time ON user_feed_archive(user_id, timestamp, event_id);
+CREATE INDEX IF NOT EXISTS idx_user_feed_user_event ON user_feed(user_id, event_id);
+CREATE INDEX IF NOT EXISTS idx_user_friends_friend ON user_friends(friend_id);
+CREATE INDEX IF NOT EXISTS idx_reviews_film_useful ON reviews(film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS idx_reviews_useful ON reviews(useful DESC, review_id);
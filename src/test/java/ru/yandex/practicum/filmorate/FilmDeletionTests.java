@@ -95,6 +95,6 @@ class FilmDeletionTests {
         filmController.deleteFilm(film1.getId());
 
         // Проверка
-        assertEquals(1, filmController.getAll().size(), "Должен остаться только один фильм");
+        assertEquals(1, filmController.getAll(null, null).size(), "Должен остаться только один фильм");
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.repository.impl.FilmHydrator;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class FilmHydrationTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmHydrator filmHydrator;
+
+    private UserDto firstUser;
+    private UserDto secondUser;
+    private FilmDto likedFilm;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM film_likes");
+        jdbcTemplate.execute("DELETE FROM film_genres");
+        jdbcTemplate.execute("DELETE FROM film_directors");
+        jdbcTemplate.execute("DELETE FROM films");
+
+        firstUser = userService.addUser(user("first"));
+        secondUser = userService.addUser(user("second"));
+
+        likedFilm = filmService.create(film("Уникальное название", 1));
+        filmService.create(film("Фильм без лайков", 1));
+
+        filmService.addLike(likedFilm.getId(), firstUser.getId());
+        filmService.addLike(likedFilm.getId(), secondUser.getId());
+    }
+
+    @Test
+    void commonFilms_RowsReadShouldNotGrowWithCatalog() {
+        long before = rowsReadBy(() -> filmService.getCommonFilms(firstUser.getId(), secondUser.getId()));
+
+        growCatalog(200);
+
+        long after = rowsReadBy(() -> filmService.getCommonFilms(firstUser.getId(), secondUser.getId()));
+        assertEquals(before, after, "Объем чтения должен зависеть только от размера ответа");
+    }
+
+    @Test
+    void popularByGenre_RowsReadShouldNotGrowWithCatalog() {
+        long before = rowsReadBy(() -> filmService.getPopularFilmsByGenreAndYear(1, 1, null));
+
+        growCatalog(200);
+
+        long after = rowsReadBy(() -> filmService.getPopularFilmsByGenreAndYear(1, 1, null));
+        assertEquals(before, after, "Объем чтения должен зависеть только от размера ответа");
+    }
+
+    @Test
+    void search_RowsReadShouldNotGrowWithCatalog() {
+        long before = rowsReadBy(() -> filmService.searchFilms("Уникальное", List.of("title"), null));
+
+        growCatalog(200);
+
+        long after = rowsReadBy(() -> filmService.searchFilms("Уникальное", List.of("title"), null));
+        assertEquals(before, after, "Объем чтения должен зависеть только от размера ответа");
+    }
+
+    @Test
+    void hydratedFilmShouldContainGenresAndLikes() {
+        List<FilmDto> common = filmService.getCommonFilms(firstUser.getId(), secondUser.getId());
+
+        assertEquals(1, common.size());
+        assertEquals(Set.of(firstUser.getId(), secondUser.getId()), common.getFirst().getLikes());
+        assertEquals(1, common.getFirst().getGenres().size());
+    }
+
+    private long rowsReadBy(Runnable request) {
+        long start = filmHydrator.getRowsLoaded();
+        request.run();
+        return filmHydrator.getRowsLoaded() - start;
+    }
+
+    // Наполнение таблиц фильмами, которые не попадают в ответы проверяемых запросов
+    private void growCatalog(int films) {
+        Integer noiseUserId = userService.addUser(user("noise" + System.nanoTime())).getId();
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < films; i++) {
+            rows.add(new Object[]{"Шум " + i, "Описание", LocalDate.of(2000, 1, 1), 90, 1});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) VALUES (?, ?, ?, ?, ?)",
+                rows);
+        jdbcTemplate.update("""
+                INSERT INTO film_genres (film_id, genre_id)
+                SELECT id, 2 FROM films WHERE name LIKE 'Шум %'
+                """);
+        jdbcTemplate.update("""
+                INSERT INTO film_likes (user_id, film_id)
+                SELECT ?, id FROM films WHERE name LIKE 'Шум %'
+                """, noiseUserId);
+    }
+
+    private static UserDto user(String login) {
+        return UserDto.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static FilmDto film(String name, int genreId) {
+        return FilmDto.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2010, 5, 5))
+                .duration(100L)
+                .mpa(new MpaDto(1, "G", null))
+                .genres(new HashSet<>(Set.of(new GenreDto(genreId, null))))
+                .build();
+    }
+}
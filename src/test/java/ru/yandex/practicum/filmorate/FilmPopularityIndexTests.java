@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class FilmPopularityIndexTests {
+    private static final LocalDate RELEASE = LocalDate.of(2000, 1, 1);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    // Отдельный рейтинг без базы: порядок проверяется на известном наборе фильмов
+    private final FilmPopularityIndex index = new FilmPopularityIndex(null);
+
+    private Integer filmId;
+    private Integer userId;
+
+    @AfterEach
+    void tearDown() {
+        if (filmId != null) {
+            filmService.deleteFilm(filmId);
+            filmId = null;
+        }
+        if (userId != null) {
+            userService.deleteUser(userId);
+            userId = null;
+        }
+    }
+
+    @Test
+    void top_ShouldOrderByLikesThenByIdDescending() {
+        index.putFilm(1, RELEASE, Set.of(), 5);
+        index.putFilm(2, RELEASE, Set.of(), 7);
+        index.putFilm(3, RELEASE, Set.of(), 5);
+        index.putFilm(4, RELEASE, Set.of(), 0);
+
+        assertEquals(List.of(2, 3, 1, 4), index.top(10), "При равных лайках первым идет фильм с большим id");
+        assertEquals(List.of(2, 3), index.top(2));
+        assertTrue(index.top(0).isEmpty());
+    }
+
+    @Test
+    void adjustAndRemove_ShouldReorderTop() {
+        index.putFilm(1, RELEASE, Set.of(), 1);
+        index.putFilm(2, RELEASE, Set.of(), 2);
+
+        index.adjust(1, 2);
+        assertEquals(List.of(1, 2), index.top(10));
+        assertEquals(3, index.getLikes(1));
+
+        // счетчик не уходит в минус
+        index.adjust(2, -5);
+        assertEquals(0, index.getLikes(2));
+
+        index.remove(1);
+        assertEquals(List.of(2), index.top(10));
+        assertFalse(index.contains(1));
+        assertEquals(0, index.getLikes(1));
+    }
+
+    @Test
+    void topByGenreAndYear_ShouldServeEachPartition() {
+        index.putFilm(1, LocalDate.of(2000, 5, 1), Set.of(1, 2), 3);
+        index.putFilm(2, LocalDate.of(2001, 5, 1), Set.of(1), 4);
+        index.putFilm(3, LocalDate.of(2000, 5, 1), Set.of(2), 3);
+        index.putFilm(4, null, Set.of(1), 9);
+
+        assertEquals(List.of(4, 2, 1), index.top(10, 1, null));
+        assertEquals(List.of(3, 1), index.top(10, null, 2000), "Равные лайки внутри раздела - по убыванию id");
+        assertEquals(List.of(1), index.top(10, 1, 2000));
+        assertTrue(index.top(10, 3, null).isEmpty());
+        // фильм без даты выхода есть только в общих разделах и разделе жанра
+        assertEquals(List.of(4, 2, 3, 1), index.top(10, null, null));
+    }
+
+    @Test
+    void updateFilm_ShouldMoveFilmBetweenPartitionsKeepingLikes() {
+        index.putFilm(1, LocalDate.of(2000, 5, 1), Set.of(1), 6);
+
+        index.updateFilm(1, LocalDate.of(2005, 5, 1), Set.of(2));
+
+        assertTrue(index.top(10, 1, null).isEmpty());
+        assertTrue(index.top(10, null, 2000).isEmpty());
+        assertEquals(List.of(1), index.top(10, 2, 2005));
+        assertEquals(6, index.getLikes(1));
+
+        index.adjust(1, 1);
+        index.putFilm(2, LocalDate.of(2005, 1, 1), Set.of(2), 7);
+        assertEquals(List.of(2, 1), index.top(10, 2, 2005), "Лайк меняет порядок и в разделах");
+    }
+
+    @Test
+    void checkConsistency_ShouldRepairLikesCountColumn() {
+        filmId = filmService.create(FilmDto.builder()
+                .name("Фильм для сверки")
+                .description("Описание")
+                .releaseDate(RELEASE)
+                .duration(120L)
+                .mpa(new MpaDto(1, "G", "General Audiences"))
+                .genres(new HashSet<>())
+                .build()).getId();
+        userId = userService.addUser(UserDto.builder()
+                .email("consistency@example.com")
+                .login("consistency")
+                .name("Consistency")
+                .birthday(LocalDate.now().minusYears(20))
+                .build()).getId();
+        filmService.addLike(filmId, userId);
+
+        jdbcTemplate.update("UPDATE films SET likes_count = 5 WHERE id = ?", filmId);
+
+        assertEquals(1, filmPopularityIndex.checkConsistency(true).get(filmId));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT likes_count FROM films WHERE id = ?", Integer.class, filmId), "Столбец исправлен по film_likes");
+        assertEquals(1, filmPopularityIndex.getLikes(filmId));
+    }
+}
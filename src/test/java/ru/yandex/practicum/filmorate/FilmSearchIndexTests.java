@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSearchIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Индекс без базы: фильмы и режиссеры добавляются из теста
+class FilmSearchIndexTests {
+    private static final LocalDate RELEASE = LocalDate.of(2000, 1, 1);
+    private static final int LIMIT = 10;
+
+    private final FilmPopularityIndex filmPopularityIndex = new FilmPopularityIndex(null);
+    private final FilmSearchIndex index = new FilmSearchIndex(null, filmPopularityIndex);
+
+    @BeforeEach
+    void setUp() {
+        index.putDirector(1, "Christopher Nolan");
+        index.putDirector(2, "Jonathan Nolan");
+        index.putDirector(3, "Denis Villeneuve");
+        putFilm(10, "Interstellar", 3, 1, 2);
+        putFilm(11, "Nolan Sisters Story", 1, 3);
+        putFilm(12, "Dune", 5, 3);
+    }
+
+    @Test
+    void filmWithSeveralMatchingDirectors_ShouldBeFoundOnce() {
+        assertEquals(List.of(10), index.search("nolan", false, true, LIMIT),
+                "Фильм двух подходящих режиссеров должен попасть в выдачу один раз");
+        // совпадение и по названию, и по режиссеру
+        assertEquals(List.of(10, 11), index.search("NOLAN", true, true, LIMIT));
+    }
+
+    @Test
+    void search_ShouldOrderByLikesThenById() {
+        assertEquals(List.of(12, 10, 11), index.search("", true, false, LIMIT));
+        assertEquals(List.of(12, 10), index.search("", true, false, 2));
+
+        filmPopularityIndex.adjust(11, 4);
+        assertEquals(List.of(11, 10), index.search("nolan", true, true, LIMIT), "Выдача учитывает текущие лайки");
+    }
+
+    @Test
+    void longQuery_ShouldMatchSubstringOnly() {
+        // все триграммы запроса есть в названии, но подстроки нет
+        putFilm(13, "abca cab", 0);
+
+        assertTrue(index.search("abcab", true, false, LIMIT).isEmpty());
+        assertEquals(List.of(13), index.search("bca", true, false, LIMIT));
+        assertEquals(List.of(10), index.search("stella", true, false, LIMIT));
+    }
+
+    @Test
+    void removedDirectorAndFilm_ShouldLeaveSearchResults() {
+        index.removeDirector(1);
+        assertEquals(List.of(10), index.search("nolan", false, true, LIMIT));
+        assertEquals(Set.of(2), index.directorsOfFilm(10));
+
+        index.removeFilm(10);
+        assertTrue(index.search("nolan", false, true, LIMIT).isEmpty());
+        assertTrue(index.filmsOfDirector(2).isEmpty());
+    }
+
+    private void putFilm(int filmId, String title, int likes, Integer... directorIds) {
+        filmPopularityIndex.putFilm(filmId, RELEASE, Set.of(), likes);
+        index.putFilm(filmId, title, List.of(directorIds));
+    }
+}
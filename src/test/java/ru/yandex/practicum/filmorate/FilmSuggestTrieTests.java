@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie.Kind;
+import ru.yandex.practicum.filmorate.repository.memory.FilmSuggestTrie.RankedSuggestion;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class FilmSuggestTrieTests {
+    // Сгенерированные фильмы есть только в индексах в памяти; id вне диапазона фильмов базы
+    private static final int FIRST_ID = 1_000_000;
+    private static final int FILMS = 100_000;
+    private static final int WORDS = 2_000;
+    private static final int LIMIT = 10;
+
+    @Autowired
+    private FilmSuggestTrie filmSuggestTrie;
+
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, Integer> likes = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < WORDS; i++) {
+            // общий префикс "qz" отделяет сгенерированные слова от названий в базе
+            StringBuilder word = new StringBuilder("qz");
+            int length = 2 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(word.toString());
+        }
+
+        // разное число лайков у каждого фильма: ожидаемый порядок однозначен
+        List<Integer> likeCounts = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            likeCounts.add(i);
+        }
+        Collections.shuffle(likeCounts, random);
+
+        for (int i = 0; i < FILMS; i++) {
+            int filmId = FIRST_ID + i;
+            StringJoiner title = new StringJoiner(" ");
+            int wordCount = 2 + random.nextInt(3);
+            for (int j = 0; j < wordCount; j++) {
+                title.add(words.get(random.nextInt(WORDS)));
+            }
+            titles.put(filmId, title.toString());
+            likes.put(filmId, likeCounts.get(i));
+            filmPopularityIndex.putFilm(filmId, LocalDate.of(2000, 1, 1), Set.of(), likeCounts.get(i));
+            filmSuggestTrie.putFilm(filmId, title.toString());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        titles.keySet().forEach(filmId -> {
+            filmSuggestTrie.removeFilm(filmId);
+            filmPopularityIndex.remove(filmId);
+        });
+    }
+
+    @Test
+    void suggest_ShouldReturnMostLikedMatchesOfLargeSet() {
+        List<String> prefixes = new ArrayList<>(List.of("qz", "qza", "qzq"));
+        for (int i = 0; i < 20; i++) {
+            String word = words.get(i * 97);
+            prefixes.add(word.substring(0, 4));
+            prefixes.add(word);
+        }
+
+        for (String prefix : prefixes) {
+            List<Integer> expected = titles.entrySet().stream()
+                    .filter(entry -> entry.getValue().startsWith(prefix) || entry.getValue().contains(" " + prefix))
+                    .map(Map.Entry::getKey)
+                    .sorted(Comparator.comparing(likes::get).reversed())
+                    .limit(LIMIT)
+                    .toList();
+
+            List<RankedSuggestion> suggestions = filmSuggestTrie.suggest(prefix, LIMIT);
+            assertTrue(suggestions.stream().allMatch(suggestion -> suggestion.kind() == Kind.FILM));
+            assertEquals(expected, suggestions.stream().map(RankedSuggestion::id).toList(),
+                    "Подсказки по префиксу " + prefix + " должны быть самыми популярными совпадениями");
+        }
+    }
+
+    @Test
+    void likesChanged_ShouldReorderSuggestions() {
+        String prefix = words.getFirst();
+        List<RankedSuggestion> before = filmSuggestTrie.suggest(prefix, LIMIT);
+        assertFalse(before.isEmpty());
+
+        // последний по популярности фильм с этим словом становится самым популярным
+        int filmId = titles.entrySet().stream()
+                .filter(entry -> entry.getValue().startsWith(prefix) || entry.getValue().contains(" " + prefix))
+                .map(Map.Entry::getKey)
+                .min(Comparator.comparing(likes::get))
+                .orElseThrow();
+        filmPopularityIndex.adjust(filmId, FILMS);
+        filmSuggestTrie.likesChanged(filmId);
+
+        RankedSuggestion first = filmSuggestTrie.suggest(prefix, LIMIT).getFirst();
+        assertEquals(filmId, first.id());
+        assertEquals(likes.get(filmId) + FILMS, first.likes());
+
+        // после снятия лайков фильм снова уходит из первых подсказок
+        filmPopularityIndex.adjust(filmId, -FILMS);
+        filmSuggestTrie.likesChanged(filmId);
+        assertEquals(before, filmSuggestTrie.suggest(prefix, LIMIT));
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Граф без базы: ребра добавляются из теста
+class FriendshipGraphTests {
+    private final FriendshipGraph graph = new FriendshipGraph(null);
+
+    @Test
+    void friendsOf_ShouldBeSortedAndDirected() {
+        graph.addFriend(1, 5);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 4);
+        // повторное добавление не создает второго ребра
+        graph.addFriend(1, 3);
+
+        assertArrayEquals(new int[]{3, 4, 5}, graph.friendsOf(1));
+        assertArrayEquals(new int[]{1}, graph.followersOf(3));
+        assertTrue(graph.isFriend(1, 3));
+        assertFalse(graph.isFriend(3, 1), "Дружба односторонняя");
+        assertEquals(3, graph.edgeCount());
+    }
+
+    @Test
+    void commonFriends_ShouldIntersectFriendLists() {
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 4);
+        graph.addFriend(1, 6);
+        graph.addFriend(3, 4);
+        graph.addFriend(3, 5);
+        graph.addFriend(3, 6);
+
+        assertArrayEquals(new int[]{4, 6}, graph.commonFriends(1, 3));
+        assertArrayEquals(new int[]{4, 6}, graph.commonFriends(3, 1));
+        assertArrayEquals(new int[0], graph.commonFriends(1, 7));
+    }
+
+    @Test
+    void removeFriendAndUser_ShouldDropBothDirections() {
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(2, 3);
+        graph.addFriend(3, 1);
+
+        graph.removeFriend(1, 2);
+        assertArrayEquals(new int[]{3}, graph.friendsOf(1));
+        assertArrayEquals(new int[0], graph.followersOf(2));
+
+        graph.removeUser(3);
+        assertArrayEquals(new int[0], graph.friendsOf(1), "Удаленный пользователь пропадает из чужих списков друзей");
+        assertArrayEquals(new int[0], graph.friendsOf(2));
+        assertArrayEquals(new int[0], graph.followersOf(1));
+        assertEquals(0, graph.edgeCount());
+    }
+
+    @Test
+    void usersWithFollowersOver_ShouldApplyThreshold() {
+        graph.addFriend(1, 9);
+        graph.addFriend(2, 9);
+        graph.addFriend(1, 8);
+
+        assertEquals(List.of(9), graph.usersWithFollowersOver(1));
+        assertTrue(graph.usersWithFollowersOver(2).isEmpty());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.repository.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.repository.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class InMemoryRollbackTests {
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+
+    @Autowired
+    private UserDbStorage userDbStorage;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmPopularityIndex filmPopularityIndex;
+
+    @Autowired
+    private FilmLikeMatrix filmLikeMatrix;
+
+    @Autowired
+    private FriendshipGraph friendshipGraph;
+
+    private Integer filmId;
+    private Integer userId;
+    private Integer friendId;
+
+    @BeforeEach
+    void setUp() {
+        filmId = filmService.create(FilmDto.builder()
+                .name("Фильм для отката")
+                .description("Описание")
+                .releaseDate(LocalDate.now().minusYears(1))
+                .duration(120L)
+                .mpa(new MpaDto(1, "G", "General Audiences"))
+                .genres(new HashSet<>())
+                .build()).getId();
+        userId = addUser("rollback");
+        friendId = addUser("rollbackFriend");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (filmDbStorage.existsById(filmId)) {
+            filmService.deleteFilm(filmId);
+        }
+        for (Integer id : new Integer[]{userId, friendId}) {
+            if (userService.existsById(id)) {
+                userService.deleteUser(id);
+            }
+        }
+    }
+
+    @Test
+    void rolledBackLike_ShouldNotChangeIndexes() {
+        transactionTemplate.executeWithoutResult(status -> {
+            filmDbStorage.addLike(filmId, userId);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, filmPopularityIndex.getLikes(filmId), "Откаченный лайк не должен попасть в рейтинг");
+        assertFalse(filmLikeMatrix.contains(userId, filmId));
+
+        filmDbStorage.addLike(filmId, userId);
+        assertEquals(1, filmPopularityIndex.getLikes(filmId), "Зафиксированный лайк применяется к рейтингу");
+        assertTrue(filmLikeMatrix.contains(userId, filmId));
+    }
+
+    @Test
+    void rolledBackDeletes_ShouldKeepEntitiesInMemory() {
+        userDbStorage.addFriend(userId, friendId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            filmDbStorage.delete(filmId);
+            userDbStorage.delete(friendId);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(filmDbStorage.existsById(filmId), "Фильм остается в реестре после отката удаления");
+        assertTrue(filmPopularityIndex.contains(filmId));
+        assertTrue(userDbStorage.existsById(friendId));
+        assertTrue(friendshipGraph.isFriend(userId, friendId), "Дружба остается в графе после отката удаления");
+    }
+
+    private Integer addUser(String login) {
+        return userService.addUser(UserDto.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.now().minusYears(20))
+                .build()).getId();
+    }
+}
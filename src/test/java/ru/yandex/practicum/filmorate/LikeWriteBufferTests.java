@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Сброс по расписанию отложен на час, в буфере помещаются 2 пары
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.capacity=2",
+        "filmorate.likes.write-behind.max-lag=PT1H",
+        "filmorate.likes.write-behind.flush-interval=PT1H"
+})
+@AutoConfigureTestDatabase
+class LikeWriteBufferTests {
+    private static final int USERS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DirectorService directorService;
+
+    @Autowired
+    private LikeWriteBuffer likeWriteBuffer;
+
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        likeWriteBuffer.flush();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userService.addUser(UserDto.builder()
+                    .email("liker" + i + "@example.com")
+                    .login("liker" + i)
+                    .name("Liker " + i)
+                    .birthday(LocalDate.now().minusYears(20))
+                    .build()).getId());
+        }
+        for (int i = 0; i < 2; i++) {
+            filmIds.add(filmService.create(FilmDto.builder()
+                    .name("Фильм " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.now().minusYears(1))
+                    .duration(120L)
+                    .mpa(new MpaDto(1, "G", "General Audiences"))
+                    .genres(new HashSet<>())
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        filmIds.forEach(filmId -> {
+            if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films WHERE id = ?", Integer.class, filmId) > 0) {
+                filmService.deleteFilm(filmId);
+            }
+        });
+        userIds.forEach(userId -> {
+            if (userService.existsById(userId)) {
+                userService.deleteUser(userId);
+            }
+        });
+        filmIds.clear();
+        userIds.clear();
+    }
+
+    @Test
+    void bufferedLikes_ShouldBeVisibleBeforeFlush() {
+        Integer filmId = filmIds.getFirst();
+        filmService.addLike(filmId, userIds.get(0));
+        filmService.addLike(filmId, userIds.get(1));
+
+        assertEquals(0, likesInDb(filmId), "До сброса лайки находятся только в буфере");
+        assertEquals(Set.of(userIds.get(0), userIds.get(1)), filmService.getFilmById(filmId).getLikes(),
+                "Фильм должен показывать лайки из буфера");
+        FilmDto popular = filmService.getPopularFilm(1).getFirst();
+        assertEquals(filmId, popular.getId());
+        assertEquals(2, popular.getLikes().size(), "Лайки популярного фильма совпадают с его местом в рейтинге");
+
+        likeWriteBuffer.flush();
+        assertEquals(2, likesInDb(filmId));
+        assertEquals(Set.of(userIds.get(0), userIds.get(1)), filmService.getFilmById(filmId).getLikes());
+    }
+
+    @Test
+    void likeAndUnlike_ShouldCoalesce() {
+        Integer filmId = filmIds.getFirst();
+        long coalesced = likeWriteBuffer.stats().coalesced();
+
+        filmService.addLike(filmId, userIds.getFirst());
+        filmService.removeLike(filmId, userIds.getFirst());
+
+        assertEquals(coalesced + 1, likeWriteBuffer.stats().coalesced());
+        assertEquals(0, likeWriteBuffer.stats().pending(), "Взаимно уничтоженная пара не ждет записи");
+        assertTrue(filmService.getFilmById(filmId).getLikes().isEmpty());
+        likeWriteBuffer.flush();
+        assertEquals(0, likesInDb(filmId));
+    }
+
+    @Test
+    void fullBuffer_ShouldWriteSynchronously() {
+        Integer filmId = filmIds.getFirst();
+        long syncWrites = likeWriteBuffer.stats().syncWrites();
+
+        userIds.forEach(userId -> filmService.addLike(filmId, userId));
+
+        assertEquals(2, likeWriteBuffer.stats().pending());
+        assertEquals(syncWrites + 1, likeWriteBuffer.stats().syncWrites(), "Третья пара не помещается в буфер");
+        assertEquals(1, likesInDb(filmId), "Пара без места в буфере пишется в базу сразу");
+        assertEquals(new HashSet<>(userIds), filmService.getFilmById(filmId).getLikes());
+
+        likeWriteBuffer.flush();
+        assertEquals(USERS, likesInDb(filmId));
+    }
+
+    @Test
+    void directorFilmsByLikes_ShouldCountBufferedLikes() {
+        Director director = directorService.createDirector(new Director(null, "Режиссер"));
+        filmIds.forEach(filmId -> jdbcTemplate.update(
+                "INSERT INTO film_directors (film_id, director_id) VALUES (?, ?)", filmId, director.getId()));
+        try {
+            // у первого фильма лайк уже в базе, у второго - два лайка только в буфере
+            filmService.addLike(filmIds.getFirst(), userIds.getFirst());
+            likeWriteBuffer.flush();
+            filmService.addLike(filmIds.get(1), userIds.get(1));
+            filmService.addLike(filmIds.get(1), userIds.get(2));
+
+            List<Integer> order = filmService.getFilmsDirector(director.getId().longValue(), "likes").stream()
+                    .map(FilmDto::getId)
+                    .toList();
+            assertEquals(List.of(filmIds.get(1), filmIds.getFirst()), order,
+                    "Порядок по лайкам должен учитывать лайки в буфере");
+        } finally {
+            directorService.removeDirector(director.getId().longValue());
+        }
+    }
+
+    @Test
+    void deleteFilmAndUser_ShouldFlushBufferFirst() {
+        Integer deletedFilm = filmIds.getFirst();
+        Integer deletedUser = userIds.getFirst();
+        long failedRows = likeWriteBuffer.stats().failedRows();
+        filmService.addLike(deletedFilm, userIds.get(1));
+        filmService.addLike(filmIds.get(1), deletedUser);
+
+        // удаление сбрасывает буфер до удаления строк, иначе сброс после него нарушил бы внешние ключи
+        filmService.deleteFilm(deletedFilm);
+        userService.deleteUser(deletedUser);
+        likeWriteBuffer.flush();
+
+        assertEquals(failedRows, likeWriteBuffer.stats().failedRows(), "Лайки не должны теряться с ошибкой записи");
+        assertEquals(0, likeWriteBuffer.stats().pending());
+        assertEquals(0, likesInDb(deletedFilm));
+        assertEquals(0, likesInDb(filmIds.get(1)));
+        assertTrue(filmService.getFilmById(filmIds.get(1)).getLikes().isEmpty());
+    }
+
+    private int likesInDb(Integer filmId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+    }
+}
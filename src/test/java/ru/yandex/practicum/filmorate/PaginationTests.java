@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class PaginationTests {
+    private static final int COUNT = 5;
+    private static final int PAGE = 2;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    private final List<Integer> filmIds = new ArrayList<>();
+    private final List<Integer> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < COUNT; i++) {
+            filmIds.add(filmService.create(FilmDto.builder()
+                    .name("Страница " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.now().minusYears(1))
+                    .duration(120L)
+                    .mpa(new MpaDto(1, "G", "General Audiences"))
+                    .genres(new HashSet<>())
+                    .build()).getId());
+            userIds.add(userService.addUser(UserDto.builder()
+                    .email("page" + i + "@example.com")
+                    .login("page" + i)
+                    .name("Page " + i)
+                    .birthday(LocalDate.now().minusYears(20))
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        filmIds.forEach(filmService::deleteFilm);
+        userIds.forEach(userService::deleteUser);
+        filmIds.clear();
+        userIds.clear();
+    }
+
+    @Test
+    void filmPages_ShouldCoverAllFilmsWithoutGapsOrRepeats() {
+        List<Integer> expected = filmService.getAll().stream().map(FilmDto::getId).sorted().toList();
+        assertEquals(expected.subList(0, PAGE),
+                filmService.getPage(null, PAGE).stream().map(FilmDto::getId).toList(), "Первая страница - с начала");
+
+        List<Integer> paged = new ArrayList<>();
+        Integer after = null;
+        List<FilmDto> page;
+        while (!(page = filmService.getPage(after, PAGE)).isEmpty()) {
+            assertTrue(page.size() <= PAGE);
+            page.forEach(film -> paged.add(film.getId()));
+            after = page.getLast().getId();
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void filmPage_ShouldStartAfterCursor() {
+        assertEquals(filmIds.subList(2, 4),
+                filmService.getPage(filmIds.get(1), PAGE).stream().map(FilmDto::getId).toList());
+        // курсор не обязан указывать на существующий фильм
+        assertEquals(filmIds.subList(0, 1),
+                filmService.getPage(filmIds.getFirst() - 1, 1).stream().map(FilmDto::getId).toList());
+        assertTrue(filmService.getPage(filmIds.getLast(), PAGE).isEmpty(), "После последнего id страница пуста");
+    }
+
+    @Test
+    void userPages_ShouldCoverAllUsersWithoutGapsOrRepeats() {
+        List<Integer> expected = userService.getAll().stream().map(UserDto::getId).sorted().toList();
+
+        List<Integer> paged = new ArrayList<>();
+        Integer after = null;
+        List<UserDto> page;
+        while (!(page = userService.getPage(after, PAGE)).isEmpty()) {
+            assertTrue(page.size() <= PAGE);
+            page.forEach(user -> paged.add(user.getId()));
+            after = page.getLast().getId();
+        }
+        assertEquals(expected, paged);
+        assertTrue(userService.getPage(userIds.getLast(), PAGE).isEmpty());
+    }
+
+    @Test
+    void nonPositiveLimit_ShouldBeRejected() {
+        assertThrows(ValidationException.class, () -> filmService.getPage(null, 0));
+        assertThrows(ValidationException.class, () -> userService.getPage(null, -1));
+    }
+}
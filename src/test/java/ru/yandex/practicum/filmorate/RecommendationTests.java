@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationCache;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.SimilarityMetric;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Кэш рекомендаций сбрасывается и пересчитывается только из теста
+@SpringBootTest(properties = {
+        "filmorate.recommendations.cache.invalidation-interval=PT1H",
+        "filmorate.recommendations.cache.refresh-interval=PT1H"
+})
+@AutoConfigureTestDatabase
+class RecommendationTests {
+    private static final int USERS = 3;
+    private static final int FILMS = 4;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userService.addUser(UserDto.builder()
+                    .email("recommend" + i + "@example.com")
+                    .login("recommend" + i)
+                    .name("Recommend " + i)
+                    .birthday(LocalDate.now().minusYears(20))
+                    .build()).getId());
+        }
+        for (int i = 0; i < FILMS; i++) {
+            filmIds.add(filmService.create(FilmDto.builder()
+                    .name("Рекомендация " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.now().minusYears(1))
+                    .duration(120L)
+                    .mpa(new MpaDto(1, "G", "General Audiences"))
+                    .genres(new HashSet<>())
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        filmIds.forEach(filmService::deleteFilm);
+        userIds.forEach(userService::deleteUser);
+        filmIds.clear();
+        userIds.clear();
+    }
+
+    @Test
+    void usersWithoutCommonLikes_ShouldGetNoRecommendations() {
+        like(0, 0);
+        like(1, 1);
+
+        // соседи ищутся только среди пользователей с общими лайками
+        assertTrue(recommendationService.recommendFilmIds(userIds.get(0)).isEmpty());
+        assertTrue(recommendationService.recommendFilmIds(userIds.get(2)).isEmpty(), "Без лайков рекомендаций нет");
+    }
+
+    @Test
+    void recommendations_ShouldComeFromClosestNeighbourWithoutLikedFilms() {
+        like(0, 0);
+        like(0, 1);
+        like(1, 0);
+        like(1, 1);
+        like(1, 2);
+        like(2, 0);
+        like(2, 3);
+
+        // ближайший сосед - пользователь с двумя общими лайками
+        assertEquals(List.of(filmIds.get(2)), recommendationService.recommendFilmIds(userIds.get(0)));
+    }
+
+    @Test
+    void similarityMetrics_ShouldScoreByDefinition() {
+        assertEquals(2, SimilarityMetric.OVERLAP.score(2, 4, 3));
+        assertEquals(0.4, SimilarityMetric.JACCARD.score(2, 4, 3), 1e-9);
+        assertEquals(2 / Math.sqrt(12), SimilarityMetric.COSINE.score(2, 4, 3), 1e-9);
+        assertEquals(0, SimilarityMetric.JACCARD.score(0, 0, 0));
+        assertEquals(0, SimilarityMetric.COSINE.score(0, 0, 3));
+    }
+
+    @Test
+    void repeatedRequest_ShouldBeServedFromCache() {
+        like(0, 0);
+        like(1, 0);
+        like(1, 1);
+        recommendationCache.applyLikeChanges();
+
+        List<Integer> first = recommendedIds(0);
+        long hits = recommendationCache.stats().hits();
+
+        assertEquals(first, recommendedIds(0));
+        assertEquals(hits + 1, recommendationCache.stats().hits(), "Повторный запрос должен попасть в кэш");
+    }
+
+    @Test
+    void likeChange_ShouldDropCachedRecommendationsOfNeighbours() {
+        like(0, 0);
+        like(1, 0);
+        like(1, 1);
+        recommendationCache.applyLikeChanges();
+        assertEquals(List.of(filmIds.get(1)), recommendedIds(0));
+
+        // лайк соседа меняет рекомендации пользователя только после применения очереди изменений
+        like(1, 2);
+        assertEquals(List.of(filmIds.get(1)), recommendedIds(0));
+        recommendationCache.applyLikeChanges();
+
+        long misses = recommendationCache.stats().misses();
+        assertEquals(List.of(filmIds.get(1), filmIds.get(2)), recommendedIds(0));
+        assertEquals(misses + 1, recommendationCache.stats().misses(), "Запись соседа сброшена и рассчитана заново");
+    }
+
+    private List<Integer> recommendedIds(int user) {
+        return recommendationService.getRecommendations(userIds.get(user)).stream()
+                .map(FilmDto::getId)
+                .toList();
+    }
+
+    private void like(int user, int film) {
+        filmService.addLike(filmIds.get(film), userIds.get(user));
+    }
+}
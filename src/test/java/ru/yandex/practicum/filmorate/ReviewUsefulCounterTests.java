@@ -0,0 +1,201 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.ReviewDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.exeptions.NotFoundException;
+import ru.yandex.practicum.filmorate.repository.ReviewRatingStorage;
+import ru.yandex.practicum.filmorate.repository.memory.ReviewRankingIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.ReviewUsefulCounter;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Сброс по расписанию отложен на час: счетчики записываются в БД только явным вызовом flush()
+@SpringBootTest(properties = {
+        "filmorate.reviews.useful-counter.enabled=true",
+        "filmorate.reviews.useful-counter.flush-interval=PT1H"
+})
+@AutoConfigureTestDatabase
+class ReviewUsefulCounterTests {
+    private static final int USERS = 8;
+    private static final int REVIEWS = 3;
+    private static final int THREADS = 8;
+    private static final int VOTES_PER_THREAD = 300;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private ReviewRankingIndex reviewRankingIndex;
+
+    @Autowired
+    private ReviewUsefulCounter reviewUsefulCounter;
+
+    @Autowired
+    private ReviewRatingStorage reviewRatingStorage;
+
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> reviewIds = new ArrayList<>();
+    private Integer filmId;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userService.addUser(UserDto.builder()
+                    .email("counter" + i + "@example.com")
+                    .login("counter" + i)
+                    .name("Counter " + i)
+                    .birthday(LocalDate.now().minusYears(20))
+                    .build()).getId());
+        }
+        filmId = filmService.create(FilmDto.builder()
+                .name("Фильм для отзывов")
+                .description("Описание")
+                .releaseDate(LocalDate.now().minusYears(1))
+                .duration(120L)
+                .mpa(new MpaDto(1, "G", "General Audiences"))
+                .genres(new HashSet<>())
+                .build()).getId();
+        for (int i = 0; i < REVIEWS; i++) {
+            reviewIds.add(reviewService.createReview(ReviewDto.builder()
+                    .content("Отзыв " + i)
+                    .isPositive(true)
+                    .userId(userIds.get(i))
+                    .filmId(filmId)
+                    .build()).getReviewId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void concurrentVotes_PendingDeltasVisibleBeforeFlush() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                    String reviewId = String.valueOf(reviewIds.get(random.nextInt(REVIEWS)));
+                    Integer userId = userIds.get(random.nextInt(USERS));
+                    switch (random.nextInt(3)) {
+                        case 0 -> reviewService.addLike(reviewId, userId);
+                        case 1 -> reviewService.addDislike(reviewId, userId);
+                        default -> reviewService.removeRating(reviewId, userId);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // до сброса: ответы включают накопленные изменения, в БД полезность не менялась
+        Map<Integer, Integer> listed = new HashMap<>();
+        reviewService.getReviews(filmId, REVIEWS, null, null)
+                .forEach(review -> listed.put(review.getReviewId(), review.getUseful()));
+        assertTrue(reviewUsefulCounter.stats().pendingReviews() > 0, "Изменения должны копиться до сброса");
+        for (Integer reviewId : reviewIds) {
+            int ratingsSum = ratingsSum(reviewId);
+            assertEquals(0, usefulInDb(reviewId), "До сброса полезность в БД не меняется");
+            assertEquals(ratingsSum, listed.get(reviewId), "Список отзывов должен учитывать несброшенные оценки");
+            assertEquals(ratingsSum, reviewService.getReviewById(reviewId).orElseThrow().getUseful(),
+                    "Отзыв по id должен учитывать несброшенные оценки");
+        }
+
+        // после сброса: полезность в БД равна сумме оценок, ответы не меняются
+        reviewUsefulCounter.flush();
+        assertEquals(0, reviewUsefulCounter.stats().pendingReviews());
+        for (Integer reviewId : reviewIds) {
+            int ratingsSum = ratingsSum(reviewId);
+            assertEquals(ratingsSum, usefulInDb(reviewId), "Полезность отзыва должна равняться сумме оценок");
+            assertEquals(ratingsSum, reviewService.getReviewById(reviewId).orElseThrow().getUseful());
+        }
+        List<Integer> expectedOrder = jdbcTemplate.queryForList(
+                "SELECT review_id FROM reviews ORDER BY useful DESC, review_id", Integer.class);
+        List<Integer> actualOrder = reviewService.getReviews(null, REVIEWS, null, null).stream()
+                .map(ReviewDto::getReviewId)
+                .toList();
+        assertEquals(expectedOrder, actualOrder);
+    }
+
+    @Test
+    void voteForDeletedReview_ShouldThrowNotFound() {
+        Integer reviewId = reviewIds.getFirst();
+        // отзыв удален в БД, но еще не убран из рейтинга в памяти
+        jdbcTemplate.update("DELETE FROM reviews WHERE review_id = ?", reviewId);
+
+        assertThrows(NotFoundException.class,
+                () -> reviewRatingStorage.replaceRating(reviewId, userIds.getLast(), true));
+        assertEquals(0, ratingsCount(reviewId), "Оценка удаленного отзыва не должна записываться");
+    }
+
+    private int usefulInDb(Integer reviewId) {
+        return jdbcTemplate.queryForObject("SELECT useful FROM reviews WHERE review_id = ?", Integer.class, reviewId);
+    }
+
+    private int ratingsSum(Integer reviewId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN is_like THEN 1 ELSE -1 END), 0) FROM review_ratings WHERE review_id = ?",
+                Integer.class, reviewId);
+    }
+
+    private int ratingsCount(Integer reviewId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM review_ratings WHERE review_id = ?", Integer.class, reviewId);
+    }
+
+    private void cleanUp() {
+        reviewUsefulCounter.flush();
+        jdbcTemplate.execute("DELETE FROM review_ratings");
+        jdbcTemplate.execute("DELETE FROM reviews");
+        reviewRankingIndex.rebuild();
+        reviewIds.forEach(reviewUsefulCounter::discard);
+        userIds.forEach(userId -> {
+            if (userService.existsById(userId)) {
+                userService.deleteUser(userId);
+            }
+        });
+        if (filmId != null) {
+            filmService.deleteFilm(filmId);
+            filmId = null;
+        }
+        userIds.clear();
+        reviewIds.clear();
+    }
+}
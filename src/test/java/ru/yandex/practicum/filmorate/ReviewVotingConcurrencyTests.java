@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.MpaDto;
+import ru.yandex.practicum.filmorate.dto.ReviewDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.repository.memory.ReviewRankingIndex;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+class ReviewVotingConcurrencyTests {
+    private static final int USERS = 8;
+    private static final int REVIEWS = 3;
+    private static final int THREADS = 8;
+    private static final int VOTES_PER_THREAD = 300;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private ReviewRankingIndex reviewRankingIndex;
+
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> reviewIds = new ArrayList<>();
+    private Integer filmId;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(userService.addUser(UserDto.builder()
+                    .email("voter" + i + "@example.com")
+                    .login("voter" + i)
+                    .name("Voter " + i)
+                    .birthday(LocalDate.now().minusYears(20))
+                    .build()).getId());
+        }
+        filmId = filmService.create(FilmDto.builder()
+                .name("Фильм для отзывов")
+                .description("Описание")
+                .releaseDate(LocalDate.now().minusYears(1))
+                .duration(120L)
+                .mpa(new MpaDto(1, "G", "General Audiences"))
+                .genres(new HashSet<>())
+                .build()).getId();
+        for (int i = 0; i < REVIEWS; i++) {
+            reviewIds.add(reviewService.createReview(ReviewDto.builder()
+                    .content("Отзыв " + i)
+                    .isPositive(true)
+                    .userId(userIds.get(i))
+                    .filmId(filmId)
+                    .build()).getReviewId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    @Test
+    void concurrentVotes_UsefulShouldEqualSumOfRatings() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                    // несколько потоков голосуют от имени одного пользователя за один отзыв
+                    String reviewId = String.valueOf(reviewIds.get(random.nextInt(REVIEWS)));
+                    Integer userId = userIds.get(random.nextInt(USERS));
+                    switch (random.nextInt(3)) {
+                        case 0 -> reviewService.addLike(reviewId, userId);
+                        case 1 -> reviewService.addDislike(reviewId, userId);
+                        default -> reviewService.removeRating(reviewId, userId);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (Integer reviewId : reviewIds) {
+            Integer useful = jdbcTemplate.queryForObject(
+                    "SELECT useful FROM reviews WHERE review_id = ?", Integer.class, reviewId);
+            Integer ratingsSum = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(CASE WHEN is_like THEN 1 ELSE -1 END), 0) FROM review_ratings WHERE review_id = ?",
+                    Integer.class, reviewId);
+            assertEquals(ratingsSum, useful, "Полезность отзыва должна равняться сумме оценок");
+            assertEquals(useful, reviewService.getReviewById(reviewId).orElseThrow().getUseful());
+        }
+
+        // рейтинг в памяти совпадает с порядком по полезности в БД
+        List<Integer> expectedOrder = jdbcTemplate.queryForList(
+                "SELECT review_id FROM reviews ORDER BY useful DESC, review_id", Integer.class);
+        List<Integer> actualOrder = reviewService.getReviews(null, REVIEWS, null, null).stream()
+                .map(ReviewDto::getReviewId)
+                .toList();
+        assertEquals(expectedOrder, actualOrder);
+    }
+
+    @Test
+    void repeatedVote_ShouldNotChangeUseful() {
+        String reviewId = String.valueOf(reviewIds.getFirst());
+        Integer userId = userIds.get(USERS - 1);
+
+        reviewService.addLike(reviewId, userId);
+        reviewService.addLike(reviewId, userId);
+        assertEquals(1, usefulOf(reviewIds.getFirst()));
+
+        reviewService.addDislike(reviewId, userId);
+        assertEquals(-1, usefulOf(reviewIds.getFirst()));
+
+        reviewService.removeRating(reviewId, userId);
+        reviewService.removeRating(reviewId, userId);
+        assertEquals(0, usefulOf(reviewIds.getFirst()));
+    }
+
+    private int usefulOf(Integer reviewId) {
+        return reviewService.getReviewById(reviewId).orElseThrow().getUseful();
+    }
+
+    private void cleanUp() {
+        jdbcTemplate.execute("DELETE FROM review_ratings");
+        jdbcTemplate.execute("DELETE FROM reviews");
+        reviewRankingIndex.rebuild();
+        userIds.forEach(userId -> {
+            if (userService.existsById(userId)) {
+                userService.deleteUser(userId);
+            }
+        });
+        if (filmId != null) {
+            filmService.deleteFilm(filmId);
+            filmId = null;
+        }
+        userIds.clear();
+        reviewIds.clear();
+    }
+}
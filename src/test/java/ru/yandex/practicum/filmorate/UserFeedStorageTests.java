@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.exeptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.UserFeedEvent;
+import ru.yandex.practicum.filmorate.repository.UserFeedStorage;
+import ru.yandex.practicum.filmorate.service.FeedRetentionJob;
+import ru.yandex.practicum.filmorate.service.UserFeedService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Архивация по расписанию выключена, перенос идет пачками по 2 события
+@SpringBootTest(properties = {
+        "filmorate.feed.retention.enabled=false",
+        "filmorate.feed.retention.batch-size=2"
+})
+@AutoConfigureTestDatabase
+class UserFeedStorageTests {
+    private static final long OLD_TIMESTAMP = 1_000L;
+    private static final long NEW_TIMESTAMP = 2_000L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserFeedStorage userFeedStorage;
+
+    @Autowired
+    private FeedRetentionJob feedRetentionJob;
+
+    @Autowired
+    private UserFeedService userFeedService;
+
+    @Autowired
+    private UserService userService;
+
+    private Integer userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userService.addUser(UserDto.builder()
+                .email("feed@example.com")
+                .login("feed")
+                .name("Feed")
+                .birthday(LocalDate.now().minusYears(20))
+                .build()).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // события ленты и архива удаляются каскадно
+        if (userService.existsById(userId)) {
+            userService.deleteUser(userId);
+        }
+    }
+
+    @Test
+    void feedPage_EventsWithSameTimestamp_ShouldBeReturnedOnceInIdOrder() {
+        List<UserFeedEvent> events = addEvents(5, NEW_TIMESTAMP);
+        List<Long> expected = events.stream().map(UserFeedEvent::getEventId).toList();
+
+        // курсор (since, after) - время и id последнего события предыдущей страницы
+        List<Long> actual = new ArrayList<>();
+        long since = Long.MIN_VALUE;
+        long after = 0;
+        List<UserFeedEvent> page;
+        do {
+            page = userFeedStorage.getFeedPage(userId, since, Long.MAX_VALUE, after, 2);
+            page.forEach(event -> actual.add(event.getEventId()));
+            if (!page.isEmpty()) {
+                since = page.getLast().getTimestamp();
+                after = page.getLast().getEventId();
+            }
+        } while (page.size() == 2);
+
+        assertEquals(expected, actual, "Страницы не должны терять и повторять события с одинаковым временем");
+    }
+
+    @Test
+    void feedPage_ShouldRespectUntilBound() {
+        addEvents(2, OLD_TIMESTAMP);
+        List<UserFeedEvent> newer = addEvents(2, NEW_TIMESTAMP);
+
+        List<UserFeedEvent> page = userFeedStorage.getFeedPage(userId, NEW_TIMESTAMP, Long.MAX_VALUE, 0, 10);
+        assertEquals(newer.stream().map(UserFeedEvent::getEventId).toList(),
+                page.stream().map(UserFeedEvent::getEventId).toList());
+        assertTrue(userFeedStorage.getFeedPage(userId, Long.MIN_VALUE, OLD_TIMESTAMP, 0, 10).isEmpty());
+    }
+
+    @Test
+    void feedPage_AfterWithoutSince_ShouldBeRejected() {
+        // без since курсор after не на что опереть, и выдача начиналась бы с первой страницы
+        assertThrows(ValidationException.class, () -> userFeedService.getFeedPage(userId, null, null, 1L, 10));
+    }
+
+    @Test
+    void archiveBefore_ShouldMoveOldEventsInBatches() {
+        List<UserFeedEvent> old = addEvents(5, OLD_TIMESTAMP);
+        List<UserFeedEvent> kept = addEvents(2, NEW_TIMESTAMP);
+
+        // одна пачка переносит не более batchSize самых ранних событий
+        assertEquals(2, userFeedStorage.archiveBefore(NEW_TIMESTAMP, 2));
+        assertEquals(List.of(old.get(0).getEventId(), old.get(1).getEventId()), archivedIds());
+
+        // задача повторяет пачки, пока не перенесет все события старше границы
+        assertEquals(3, feedRetentionJob.archiveBefore(NEW_TIMESTAMP));
+        assertEquals(old.stream().map(UserFeedEvent::getEventId).toList(), archivedIds());
+        assertEquals(kept.stream().map(UserFeedEvent::getEventId).toList(),
+                userFeedStorage.getFeedByUserId(userId).stream().map(UserFeedEvent::getEventId).toList());
+
+        assertEquals(0, userFeedStorage.archiveBefore(NEW_TIMESTAMP, 2), "Повторный перенос ничего не меняет");
+    }
+
+    private List<UserFeedEvent> addEvents(int count, long timestamp) {
+        List<UserFeedEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(UserFeedEvent.builder()
+                    .timestamp(timestamp)
+                    .userId(userId)
+                    .eventType("LIKE")
+                    .operation("ADD")
+                    .entityId(i + 1)
+                    .build());
+        }
+        userFeedStorage.addEvents(events);
+        return events;
+    }
+
+    private List<Long> archivedIds() {
+        return jdbcTemplate.queryForList(
+                "SELECT event_id FROM user_feed_archive WHERE user_id = ? ORDER BY event_id", Long.class, userId);
+    }
+}
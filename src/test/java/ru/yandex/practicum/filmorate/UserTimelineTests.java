@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dto.EventDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.service.FeedRetentionJob;
+import ru.yandex.practicum.filmorate.service.UserFeedService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Лента хранит 3 события, автор с 2 подписчиками считается популярным
+@SpringBootTest(properties = {
+        "filmorate.feed.timeline.capacity=3",
+        "filmorate.feed.timeline.celebrity-threshold=1",
+        "filmorate.feed.retention.enabled=false"
+})
+@AutoConfigureTestDatabase
+class UserTimelineTests {
+    private static final int LIMIT = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserFeedService userFeedService;
+
+    @Autowired
+    private FeedRetentionJob feedRetentionJob;
+
+    private final List<Integer> userIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        // события лент удаляются каскадно
+        userIds.forEach(userId -> {
+            if (userService.existsById(userId)) {
+                userService.deleteUser(userId);
+            }
+        });
+        userIds.clear();
+    }
+
+    @Test
+    void fanOut_ShouldKeepLastEventsOfFriends() {
+        int reader = addUser("reader");
+        int author = addUser("author");
+        userService.addFriend(reader, author);
+        // лента загружена в память до событий автора
+        assertTrue(timelineIds(reader).isEmpty());
+
+        publish(author, 4);
+
+        List<Long> expected = feedIds(author).reversed().subList(0, 3);
+        assertEquals(expected, timelineIds(reader), "Лента должна хранить последние события друга");
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_timeline WHERE user_id = ?", Integer.class, reader),
+                "Вытесненные события удаляются и из базы");
+    }
+
+    @Test
+    void fanOut_ShouldCapTimelineRowsOfFollowerWhoNeverReads() {
+        int reader = addUser("reader");
+        int author = addUser("author");
+        userService.addFriend(reader, author);
+
+        // лента читателя ни разу не загружалась в память
+        publish(author, 5);
+        List<Long> published = feedIds(author);
+
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT event_id FROM user_timeline WHERE user_id = ? ORDER BY event_id", Long.class, reader);
+        assertEquals(published.subList(published.size() - 3, published.size()), rows,
+                "В базе остаются только последние события ленты");
+    }
+
+    @Test
+    void demotedCelebrity_EarlierEventsShouldStayInTimeline() {
+        int reader = addUser("reader");
+        int other = addUser("other");
+        int author = addUser("author");
+        userService.addFriend(reader, author);
+        userService.addFriend(other, author);
+        assertTrue(timelineIds(reader).isEmpty());
+
+        // у автора 2 подписчика: события не раскладываются по лентам и дочитываются при запросе
+        publish(author, 2);
+        assertEquals(feedIds(author).reversed(), timelineIds(reader));
+
+        // подписчик остался один: новые события раскладываются, ранние по-прежнему видны
+        userService.removeFriend(other, author);
+        publish(author, 1);
+        assertEquals(feedIds(author).reversed(), timelineIds(reader));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_timeline WHERE user_id = ?", Integer.class, reader));
+    }
+
+    @Test
+    void archivedEvents_ShouldLeaveCachedTimeline() {
+        int reader = addUser("reader");
+        int author = addUser("author");
+        userService.addFriend(reader, author);
+        assertTrue(timelineIds(reader).isEmpty());
+        publish(author, 2);
+        assertEquals(2, timelineIds(reader).size());
+
+        feedRetentionJob.archiveBefore(Instant.now().toEpochMilli() + 1);
+
+        assertTrue(timelineIds(reader).isEmpty(), "Перенесенные в архив события не должны оставаться в ленте");
+    }
+
+    private int addUser(String login) {
+        int id = userService.addUser(UserDto.builder()
+                .email(login + userIds.size() + "@example.com")
+                .login(login + userIds.size())
+                .name(login)
+                .birthday(LocalDate.now().minusYears(20))
+                .build()).getId();
+        userIds.add(id);
+        return id;
+    }
+
+    private void publish(int authorId, int count) {
+        for (int i = 0; i < count; i++) {
+            userFeedService.createEvent(authorId, "LIKE", "ADD", i + 1);
+        }
+    }
+
+    // События автора, кроме событий дружбы, по возрастанию id
+    private List<Long> feedIds(int authorId) {
+        return userFeedService.getFeedByUserId(authorId).stream()
+                .filter(event -> event.getEventType().equals("LIKE"))
+                .map(EventDto::getEventId)
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    private List<Long> timelineIds(int userId) {
+        return userFeedService.getTimeline(userId, null, LIMIT).stream()
+                .map(EventDto::getEventId)
+                .toList();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.repository.memory.FilmLikeMatrix;
+import ru.yandex.practicum.filmorate.repository.memory.FriendshipGraph;
+import ru.yandex.practicum.filmorate.service.FriendSuggestionService.Suggestion;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Расчет без базы: граф и лайки заполняются из теста, compute доступен только из пакета сервиса
+class FriendSuggestionServiceTests {
+    private static final int USER = 1;
+
+    private final FriendshipGraph friendshipGraph = new FriendshipGraph(null);
+    private final FilmLikeMatrix filmLikeMatrix = new FilmLikeMatrix(null);
+
+    @BeforeEach
+    void setUp() {
+        // друзья пользователя - 2 и 3; друзья друзей - 4 (через обоих), 5 и 6
+        friendshipGraph.addFriend(USER, 2);
+        friendshipGraph.addFriend(USER, 3);
+        friendshipGraph.addFriend(2, USER);
+        friendshipGraph.addFriend(2, 3);
+        friendshipGraph.addFriend(2, 4);
+        friendshipGraph.addFriend(2, 5);
+        friendshipGraph.addFriend(3, USER);
+        friendshipGraph.addFriend(3, 4);
+        friendshipGraph.addFriend(3, 6);
+    }
+
+    @Test
+    void compute_ShouldSkipUserAndExistingFriends() {
+        List<Suggestion> suggestions = service(10_000, 50).compute(USER);
+
+        assertEquals(List.of(4, 5, 6), suggestions.stream().map(Suggestion::userId).toList(),
+                "Сам пользователь и его друзья не предлагаются");
+        assertEquals(2, suggestions.getFirst().mutualFriends());
+        assertEquals(2.0, suggestions.getFirst().score());
+    }
+
+    @Test
+    void compute_ShouldRankByMutualFriendsAndCommonLikes() {
+        filmLikeMatrix.like(USER, 100);
+        filmLikeMatrix.like(6, 100);
+
+        List<Suggestion> suggestions = service(10_000, 50).compute(USER);
+
+        // общий лайк добавляет like-weight к оценке и поднимает 6 выше 5 с равным числом общих друзей
+        assertEquals(List.of(4, 6, 5), suggestions.stream().map(Suggestion::userId).toList());
+        assertEquals(1, suggestions.get(1).commonLikes());
+        assertEquals(1.5, suggestions.get(1).score());
+    }
+
+    @Test
+    void compute_ShouldKeepOnlyMaxResults() {
+        assertEquals(List.of(4, 5), service(10_000, 2).compute(USER).stream().map(Suggestion::userId).toList());
+    }
+
+    @Test
+    void compute_ShouldStopWhenBudgetIsExhausted() {
+        for (int friendId = 10; friendId < 15; friendId++) {
+            friendshipGraph.addFriend(USER, friendId);
+            for (int candidateId = 100 * friendId; candidateId < 100 * friendId + 20; candidateId++) {
+                friendshipGraph.addFriend(friendId, candidateId);
+            }
+        }
+        FriendSuggestionService service = service(4, 50);
+
+        // у пользователя 7 друзей при бюджете 4: у каждого друга просматривается одно ребро
+        List<Suggestion> suggestions = service.compute(USER);
+
+        // порядок обхода случайный, но хотя бы два из четырех просмотренных друзей - из новых
+        assertFalse(suggestions.isEmpty());
+        assertTrue(suggestions.stream().mapToInt(Suggestion::mutualFriends).sum() <= 4,
+                "Учтено не больше ребер, чем позволяет бюджет");
+        assertEquals(1, service.stats().budgetExhausted());
+    }
+
+    @Test
+    void compute_WithoutFriendsShouldReturnNothing() {
+        assertTrue(service(10_000, 50).compute(42).isEmpty());
+    }
+
+    private FriendSuggestionService service(int budget, int maxResults) {
+        return new FriendSuggestionService(null, friendshipGraph, filmLikeMatrix, budget, maxResults, 0.5, 100,
+                Duration.ofMinutes(10));
+    }
+}